@@ -0,0 +1,158 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.base.callback;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+/**
+ * Timing loop comparing ways of delivering native audio sample data to the consumer in the audio play callback.
+ * <p>
+ * {@link DefaultAudioCallbackAdapter} copies every block of samples into a new <code>byte[]</code>, whereas
+ * {@link ByteBufferAudioCallbackAdapter} hands over a view of the native memory, re-used while the native library keeps
+ * delivering samples at the same address. The view is timed with blocks at a single address and with blocks cycling
+ * through several addresses, as the native library recycles its block memory, and with the consumer keeping a copy of
+ * each block taken from a {@link SampleBufferPool}. Besides the time, the bytes allocated for each block are reported,
+ * where the JVM is able to measure them.
+ * <p>
+ * This is a plain timing loop rather than a benchmark harness: each variant is warmed up, then timed over several
+ * rounds, and the best round is reported. Run it with <code>./gradlew bench -Pbenchmark=AudioCallbackAdapterBenchmark</code>.
+ */
+public final class AudioCallbackAdapterBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int ROUNDS = 10;
+
+    private static final int ITERATIONS = 200000;
+
+    /**
+     * Samples in each block, around 20 ms at 48 kHz.
+     */
+    private static final int SAMPLE_COUNT = 1024;
+
+    /**
+     * Bytes for each sample, 16-bit stereo.
+     */
+    private static final int BLOCK_SIZE = 4;
+
+    /**
+     * Number of distinct block addresses the native library cycles through.
+     */
+    private static final int ADDRESSES = 8;
+
+    /**
+     * Sum of sampled bytes, keeps the delivered data observable so it is not optimised away.
+     */
+    private static long sink;
+
+    private AudioCallbackAdapterBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        final Memory[] memory = new Memory[ADDRESSES];
+        final Pointer[] blocks = new Pointer[ADDRESSES];
+        for (int i = 0; i < blocks.length; i++) {
+            memory[i] = new Memory((long) SAMPLE_COUNT * BLOCK_SIZE);
+            // The native callback passes a plain pointer, Memory has a slower getByteBuffer of its own
+            blocks[i] = new Pointer(Pointer.nativeValue(memory[i]));
+        }
+        final SampleBufferPool pool = new SampleBufferPool();
+        final AudioCallbackAdapter copy = new DefaultAudioCallbackAdapter(BLOCK_SIZE) {
+            @Override
+            protected void onPlay(MediaPlayer mediaPlayer, byte[] data, int sampleCount, long pts) {
+                sink += data[sampleCount];
+            }
+        };
+        final AudioCallbackAdapter view = new ByteBufferAudioCallbackAdapter(BLOCK_SIZE) {
+            @Override
+            protected void onPlay(MediaPlayer mediaPlayer, ByteBuffer data, int sampleCount, long pts) {
+                sink += data.get(sampleCount);
+            }
+        };
+        final AudioCallbackAdapter pooled = new ByteBufferAudioCallbackAdapter(BLOCK_SIZE) {
+            @Override
+            protected void onPlay(MediaPlayer mediaPlayer, ByteBuffer data, int sampleCount, long pts) {
+                final ByteBuffer kept = pool.copy(data);
+                sink += kept.get(sampleCount);
+                pool.giveBack(kept);
+            }
+        };
+        System.out.println(SAMPLE_COUNT + " samples of " + BLOCK_SIZE + " bytes per block, " + ITERATIONS + " blocks per round, best of " + ROUNDS + " rounds");
+        report("byte[] copy", copy, blocks, 1);
+        report("view, one address", view, blocks, 1);
+        report("view, " + ADDRESSES + " addresses", view, blocks, ADDRESSES);
+        report("view and pooled copy", pooled, blocks, ADDRESSES);
+        System.out.println("(checksum " + sink + ", " + memory.length + " blocks)");
+    }
+
+    private static void report(String name, AudioCallbackAdapter adapter, Pointer[] blocks, int addresses) {
+        final long allocatedBefore = allocatedBytes();
+        final double time = time(adapter, blocks, addresses);
+        final long allocatedAfter = allocatedBytes();
+        final String allocated = allocatedBefore < 0 ? "n/a" : String.format("%.1f", (double) (allocatedAfter - allocatedBefore) / ((WARMUP_ROUNDS + ROUNDS) * ITERATIONS));
+        System.out.println(String.format("%-24s %8.1f ns/block %8s bytes/block", name, time, allocated));
+    }
+
+    /**
+     * Time delivering blocks of samples.
+     *
+     * @param adapter audio callback adapter
+     * @param blocks native sample blocks
+     * @param addresses number of the blocks to cycle through
+     * @return best time per block, in nanoseconds
+     */
+    private static double time(AudioCallbackAdapter adapter, Pointer[] blocks, int addresses) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                adapter.play(null, blocks[i % addresses], SAMPLE_COUNT, i);
+            }
+            final long elapsed = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS && elapsed < best) {
+                best = elapsed;
+            }
+        }
+        return (double) best / ITERATIONS;
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread so far.
+     *
+     * @return allocated bytes, or -1 if the JVM can not measure them
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * Timing loop comparing ways of handing the plane addresses of a frame buffer to the native library in the video lock
+ * callback.
+ * <p>
+ * The lock callback used to write a <code>Pointer[]</code>, which JNA expands into one native pointer write for each
+ * plane. The alternatives timed here write addresses precomputed when the format is negotiated, either as a single
+ * primitive array copy or as one primitive write for each plane. Each is timed against the same native plane pointer
+ * array, for one plane (packed RGB) and three planes (planar YUV). {@link NativeBuffers#writeAddresses(int, Pointer)}
+ * uses whichever is fastest for the number of planes.
+ * <p>
+ * This is a plain timing loop rather than a benchmark harness: each variant is warmed up, then timed over several
+ * rounds, and the best round is reported. Run it with <code>./gradlew bench</code>.
+ */
+public final class PlaneAddressWriteBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int ROUNDS = 10;
+
+    private static final int ITERATIONS = 2000000;
+
+    private enum Variant {
+        POINTER_ARRAY,
+        PRIMITIVE_ARRAY,
+        PRIMITIVE_PER_PLANE
+    }
+
+    private PlaneAddressWriteBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        System.out.println("Pointer size " + Native.POINTER_SIZE + ", " + ITERATIONS + " writes per round, best of " + ROUNDS + " rounds");
+        for (final int planeCount : new int[] {1, 3}) {
+            final Memory planes = new Memory((long) Native.POINTER_SIZE * planeCount);
+            final Pointer[] pointers = new Pointer[planeCount];
+            final long[] addresses = new long[planeCount];
+            for (int i = 0; i < planeCount; i++) {
+                pointers[i] = new Memory(4096);
+                addresses[i] = Pointer.nativeValue(pointers[i]);
+            }
+            final StringBuilder result = new StringBuilder().append(planeCount).append(" plane(s):");
+            for (final Variant variant : Variant.values()) {
+                result.append(String.format(" %s %.1f ns", variant, time(variant, planes, pointers, addresses)));
+            }
+            System.out.println(result);
+            // Keep the writes observable so they are not optimised away
+            if (planes.getLong(0) != addresses[0] && Native.POINTER_SIZE == 8) {
+                throw new IllegalStateException("Plane address was not written");
+            }
+        }
+    }
+
+    /**
+     * Time writing the plane addresses one way.
+     *
+     * @param variant way of writing the addresses
+     * @param planes native plane pointer array
+     * @param pointers addresses as pointers
+     * @param addresses addresses as primitives
+     * @return best time per write of all planes, in nanoseconds
+     */
+    private static double time(Variant variant, Pointer planes, Pointer[] pointers, long[] addresses) {
+        final int[] narrowAddresses = new int[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            narrowAddresses[i] = (int) addresses[i];
+        }
+        final boolean wide = Native.POINTER_SIZE == 8;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                switch (variant) {
+                    case POINTER_ARRAY:
+                        planes.write(0, pointers, 0, pointers.length);
+                        break;
+                    case PRIMITIVE_ARRAY:
+                        if (wide) {
+                            planes.write(0, addresses, 0, addresses.length);
+                        } else {
+                            planes.write(0, narrowAddresses, 0, narrowAddresses.length);
+                        }
+                        break;
+                    default:
+                        for (int plane = 0; plane < addresses.length; plane++) {
+                            if (wide) {
+                                planes.setLong((long) plane * 8, addresses[plane]);
+                            } else {
+                                planes.setInt((long) plane * 4, narrowAddresses[plane]);
+                            }
+                        }
+                        break;
+                }
+            }
+            final long elapsed = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS && elapsed < best) {
+                best = elapsed;
+            }
+        }
+        return (double) best / ITERATIONS;
+    }
+
+}
@@ -77,6 +77,7 @@ public class MediaPlayerFactory {
     private final MediaPlayerApi     mediaPlayerApi;
     private final MediaApi           mediaApi;
     private final RendererApi        rendererApi;
+    private final SharedDecodeApi    sharedDecodeApi;
     private final VideoSurfaceApi    videoSurfaceApi;
 
     /**
@@ -104,6 +105,7 @@ public class MediaPlayerFactory {
         this.mediaPlayerApi     = new MediaPlayerApi    (this);
         this.mediaApi           = new MediaApi          (this);
         this.rendererApi        = new RendererApi       (this);
+        this.sharedDecodeApi    = new SharedDecodeApi   (this);
         this.videoSurfaceApi    = new VideoSurfaceApi   (this);
     }
 
@@ -165,6 +167,10 @@ public class MediaPlayerFactory {
         return rendererApi;
     }
 
+    public final SharedDecodeApi sharedDecodes() {
+        return sharedDecodeApi;
+    }
+
     public final VideoSurfaceApi videoSurfaces() {
         return videoSurfaceApi;
     }
@@ -202,6 +208,7 @@ public class MediaPlayerFactory {
         mediaPlayerApi    .release();
         mediaApi          .release();
         rendererApi       .release();
+        sharedDecodeApi   .release();
         videoSurfaceApi   .release();
 
         LibVlc.libvlc_release(this.libvlcInstance);
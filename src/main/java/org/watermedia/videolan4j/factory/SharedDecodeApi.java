@@ -0,0 +1,357 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.factory;
+
+import org.watermedia.videolan4j.BufferFormat;
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+import org.watermedia.videolan4j.player.base.MediaPlayerEventAdapter;
+import org.watermedia.videolan4j.player.base.State;
+import org.watermedia.videolan4j.player.embedded.EmbeddedMediaPlayer;
+import org.watermedia.videolan4j.player.embedded.videosurface.CallbackVideoSurface;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.BufferAllocatorCallbackAdapter;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Behaviour pertaining to sharing a single decoder between many logical players of the same media.
+ * <p>
+ * When many players show the same media, e.g. the same stream on many screens, each would ordinarily create its own
+ * native media player and decode the media independently. Instead, acquiring a {@link SharedPlayer} for media that is
+ * already being played with the same media options and buffer format reuses the existing decoder, and every frame it
+ * produces is delivered to each logical player via the frame hub of the shared video surface - the cost then scales
+ * with the number of distinct media rather than the number of players.
+ * <p>
+ * The shared decoder is reference-counted, it is stopped and released when the last logical player is released.
+ * <p>
+ * A decoder whose media has finished, failed or been stopped is no longer shared, acquiring the same media again starts
+ * a new decoder. Logical players still holding the old decoder keep it until they are released.
+ */
+public final class SharedDecodeApi extends BaseApi {
+
+    /**
+     * Default number of frame buffers for a shared decoder, enough for a few subscribers to each hold a frame while the
+     * decoder writes the next one.
+     */
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    /**
+     * Shared decoders, keyed by buffer format, media and options.
+     */
+    private final Map<Key, SharedDecode> decodes = new HashMap<Key, SharedDecode>();
+
+    private volatile int bufferCount = DEFAULT_BUFFER_COUNT;
+
+    private volatile boolean lockBuffers;
+
+    SharedDecodeApi(MediaPlayerFactory factory) {
+        super(factory);
+    }
+
+    /**
+     * Set the number of frame buffers used by subsequently created shared decoders.
+     *
+     * @param bufferCount number of buffers, from 1 to {@link CallbackVideoSurface#MAX_BUFFER_COUNT}
+     */
+    public void setBufferCount(int bufferCount) {
+        if (bufferCount < 1 || bufferCount > CallbackVideoSurface.MAX_BUFFER_COUNT) {
+            throw new IllegalArgumentException("bufferCount must be between 1 and " + CallbackVideoSurface.MAX_BUFFER_COUNT);
+        }
+        this.bufferCount = bufferCount;
+    }
+
+    /**
+     * Get the number of frame buffers used by newly created shared decoders.
+     *
+     * @return number of buffers
+     */
+    public int bufferCount() {
+        return this.bufferCount;
+    }
+
+    /**
+     * Set whether subsequently created shared decoders lock their frame buffers in memory.
+     *
+     * @param lockBuffers <code>true</code> if the buffers should be locked; <code>false</code> if not
+     */
+    public void setLockBuffers(boolean lockBuffers) {
+        this.lockBuffers = lockBuffers;
+    }
+
+    /**
+     * Test whether newly created shared decoders lock their frame buffers in memory.
+     *
+     * @return <code>true</code> if the buffers are locked; <code>false</code> if not
+     */
+    public boolean isLockBuffers() {
+        return this.lockBuffers;
+    }
+
+    /**
+     * Acquire a logical player for media.
+     * <p>
+     * If the same media is already being decoded with the same buffer format and options, the existing decoder is
+     * shared, otherwise a new decoder is created and the media is played. Buffer formats are the same if they are
+     * of the same type, with the same chroma and the same buffer layout.
+     * <p>
+     * The returned player <em>must</em> be released when it is no longer needed.
+     *
+     * @param bufferFormat format of the decoded video frames
+     * @param mrl media resource locator
+     * @param options zero or more options to attach to the media
+     * @return logical player
+     */
+    public SharedPlayer acquire(BufferFormat bufferFormat, URI mrl, String... options) {
+        final Key key = new Key(bufferFormat, mrl, options);
+        synchronized (this.decodes) {
+            final SharedDecode decode = this.live(key);
+            if (decode != null) {
+                decode.references++;
+                return new SharedPlayer(this, decode);
+            }
+        }
+        // Creating the native media player can be slow, so it is done without holding the registry lock
+        final SharedDecode created = this.newSharedDecode(key);
+        final SharedDecode decode;
+        synchronized (this.decodes) {
+            final SharedDecode existing = this.live(key);
+            if (existing != null) {
+                decode = existing;
+            } else {
+                decode = created;
+                this.decodes.put(key, decode);
+            }
+            decode.references++;
+        }
+        if (decode != created) {
+            // Another thread created a decoder for the same media meanwhile
+            created.mediaPlayer.release();
+        } else {
+            // The reference taken here keeps the decoder alive until the logical player is returned
+            decode.mediaPlayer.media().play(key.mrl, key.options);
+        }
+        return new SharedPlayer(this, decode);
+    }
+
+    /**
+     * Get the number of distinct media currently being decoded.
+     *
+     * @return number of shared decoders
+     */
+    public int decoderCount() {
+        synchronized (this.decodes) {
+            return this.decodes.size();
+        }
+    }
+
+    /**
+     * Give back a logical player's reference to its shared decoder, stopping and releasing the decoder if it was the
+     * last one.
+     *
+     * @param decode shared decoder
+     */
+    void release(SharedDecode decode) {
+        synchronized (this.decodes) {
+            if (--decode.references > 0) {
+                return;
+            }
+            // The decoder may already have been replaced in the registry if its media finished
+            this.decodes.remove(decode.key, decode);
+        }
+        // The last logical player may well be released from a native event callback thread
+        this.factory.submit(new Runnable() {
+            @Override
+            public void run() {
+                decode.mediaPlayer.controls().stop();
+                decode.mediaPlayer.release();
+            }
+        });
+    }
+
+    /**
+     * Get the shared decoder for a key, if it is still decoding, removing it from the registry if it is not.
+     * <p>
+     * Must be invoked holding the registry lock.
+     *
+     * @param key key
+     * @return shared decoder, or <code>null</code> if there is none
+     */
+    private SharedDecode live(Key key) {
+        final SharedDecode decode = this.decodes.get(key);
+        if (decode == null) {
+            return null;
+        }
+        final State state = decode.mediaPlayer.status().state();
+        if (state == State.ENDED || state == State.ERROR || state == State.STOPPED) {
+            // The finished, error or stopped event has not been handled yet
+            this.decodes.remove(key, decode);
+            return null;
+        }
+        return decode;
+    }
+
+    /**
+     * Stop sharing a decoder whose media is no longer playing, new logical players for the same media get a new
+     * decoder.
+     *
+     * @param decode shared decoder
+     */
+    private void retire(SharedDecode decode) {
+        synchronized (this.decodes) {
+            this.decodes.remove(decode.key, decode);
+        }
+    }
+
+    private SharedDecode newSharedDecode(Key key) {
+        final CallbackVideoSurface videoSurface = this.factory.videoSurfaces().newVideoSurface(
+            key.bufferFormat,
+            new BufferAllocatorCallbackAdapter(),
+            (mediaPlayer, nativeBuffers, bufferFormat) -> {
+                // Frames are only delivered to the logical players via the frame hub
+            },
+            this.lockBuffers,
+            buffers -> {
+            },
+            this.bufferCount
+        );
+        final EmbeddedMediaPlayer mediaPlayer = this.factory.mediaPlayers().newEmbeddedMediaPlayer();
+        mediaPlayer.videoSurface().set(videoSurface);
+        final SharedDecode decode = new SharedDecode(key, mediaPlayer, videoSurface);
+        mediaPlayer.events().addMediaPlayerEventListener(new MediaPlayerEventAdapter() {
+            @Override
+            public void finished(MediaPlayer mediaPlayer) {
+                retire(decode);
+            }
+
+            @Override
+            public void stopped(MediaPlayer mediaPlayer) {
+                retire(decode);
+            }
+
+            @Override
+            public void error(MediaPlayer mediaPlayer) {
+                retire(decode);
+            }
+        });
+        return decode;
+    }
+
+    @Override
+    protected void release() {
+        final List<SharedDecode> decodes;
+        synchronized (this.decodes) {
+            decodes = new ArrayList<SharedDecode>(this.decodes.values());
+            this.decodes.clear();
+        }
+        for (SharedDecode decode : decodes) {
+            decode.mediaPlayer.controls().stop();
+            decode.mediaPlayer.release();
+        }
+    }
+
+    /**
+     * A single decoder shared by one or more logical players.
+     */
+    static final class SharedDecode {
+
+        private final Key key;
+
+        final EmbeddedMediaPlayer mediaPlayer;
+
+        final CallbackVideoSurface videoSurface;
+
+        /**
+         * Number of logical players, guarded by the registry.
+         */
+        private int references;
+
+        private SharedDecode(Key key, EmbeddedMediaPlayer mediaPlayer, CallbackVideoSurface videoSurface) {
+            this.key = key;
+            this.mediaPlayer = mediaPlayer;
+            this.videoSurface = videoSurface;
+        }
+    }
+
+    /**
+     * Identity of a shared decoder.
+     */
+    private static final class Key {
+
+        /**
+         * Frame size used to compare the buffer layouts of formats, odd so that any rounding or alignment differs.
+         */
+        private static final int LAYOUT_WIDTH = 1281;
+
+        private static final int LAYOUT_HEIGHT = 721;
+
+        private final BufferFormat bufferFormat;
+
+        private final String chroma;
+
+        private final int[] pitches;
+
+        private final int[] lines;
+
+        private final URI mrl;
+
+        private final String[] options;
+
+        private Key(BufferFormat bufferFormat, URI mrl, String[] options) {
+            this.bufferFormat = bufferFormat;
+            this.chroma = bufferFormat.getChroma();
+            this.pitches = bufferFormat.getPitches(LAYOUT_WIDTH, LAYOUT_HEIGHT);
+            this.lines = bufferFormat.getLines(LAYOUT_WIDTH, LAYOUT_HEIGHT);
+            this.mrl = mrl;
+            this.options = options != null ? options.clone() : new String[0];
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return this.sameFormat(other) && this.mrl.equals(other.mrl) && Arrays.equals(this.options, other.options);
+        }
+
+        /**
+         * Compare buffer formats by value, logical players normally each create their own format instance.
+         */
+        private boolean sameFormat(Key other) {
+            return this.bufferFormat.getClass() == other.bufferFormat.getClass()
+                && this.chroma.equals(other.chroma)
+                && Arrays.equals(this.pitches, other.pitches)
+                && Arrays.equals(this.lines, other.lines);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.chroma.hashCode() * 31 + this.mrl.hashCode()) * 31 + Arrays.hashCode(this.options);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.factory;
+
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+import org.watermedia.videolan4j.player.base.MediaPlayerEventListener;
+import org.watermedia.videolan4j.player.embedded.videosurface.FrameSubscriber;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A logical player of media decoded by a decoder shared with other logical players.
+ * <p>
+ * Each logical player receives every decoded frame via its own {@link FrameSubscriber}s, and the status of the shared
+ * decoder via its own event listeners. Subscribers and listeners are removed automatically when the logical player is
+ * released.
+ * <p>
+ * Playback of the shared media is common to every logical player, so it should not be controlled through an
+ * individual logical player.
+ *
+ * @see SharedDecodeApi
+ */
+public final class SharedPlayer {
+
+    private final SharedDecodeApi api;
+
+    private final SharedDecodeApi.SharedDecode decode;
+
+    private final List<FrameSubscriber> subscribers = new ArrayList<FrameSubscriber>();
+
+    private final List<MediaPlayerEventListener> listeners = new ArrayList<MediaPlayerEventListener>();
+
+    private boolean released;
+
+    SharedPlayer(SharedDecodeApi api, SharedDecodeApi.SharedDecode decode) {
+        this.api = api;
+        this.decode = decode;
+    }
+
+    /**
+     * Get the shared media player, e.g. to query the playback time or state.
+     *
+     * @return shared media player
+     */
+    public MediaPlayer mediaPlayer() {
+        return this.decode.mediaPlayer;
+    }
+
+    /**
+     * Add a subscriber to receive every decoded frame.
+     *
+     * @param subscriber subscriber to add
+     */
+    public synchronized void subscribe(FrameSubscriber subscriber) {
+        this.checkReleased();
+        this.decode.videoSurface.frameHub().subscribe(subscriber);
+        this.subscribers.add(subscriber);
+    }
+
+    /**
+     * Remove a frame subscriber.
+     *
+     * @param subscriber subscriber to remove
+     */
+    public synchronized void unsubscribe(FrameSubscriber subscriber) {
+        if (this.subscribers.remove(subscriber)) {
+            this.decode.videoSurface.frameHub().unsubscribe(subscriber);
+        }
+    }
+
+    /**
+     * Add a listener to receive the status events of the shared media player.
+     *
+     * @param listener listener to add
+     */
+    public synchronized void addMediaPlayerEventListener(MediaPlayerEventListener listener) {
+        this.checkReleased();
+        this.decode.mediaPlayer.events().addMediaPlayerEventListener(listener);
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove a status event listener.
+     *
+     * @param listener listener to remove
+     */
+    public synchronized void removeMediaPlayerEventListener(MediaPlayerEventListener listener) {
+        if (this.listeners.remove(listener)) {
+            this.decode.mediaPlayer.events().removeMediaPlayerEventListener(listener);
+        }
+    }
+
+    /**
+     * Release this logical player.
+     * <p>
+     * The shared decoder is stopped and released if this was the last logical player using it. Releasing more than
+     * once has no effect.
+     */
+    public synchronized void release() {
+        if (this.released) {
+            return;
+        }
+        this.released = true;
+        for (FrameSubscriber subscriber : this.subscribers) {
+            this.decode.videoSurface.frameHub().unsubscribe(subscriber);
+        }
+        for (MediaPlayerEventListener listener : this.listeners) {
+            this.decode.mediaPlayer.events().removeMediaPlayerEventListener(listener);
+        }
+        this.subscribers.clear();
+        this.listeners.clear();
+        this.api.release(this.decode);
+    }
+
+    private void checkReleased() {
+        if (this.released) {
+            throw new IllegalStateException("Shared player has been released");
+        }
+    }
+
+}
@@ -48,4 +48,19 @@ public final class VideoSurfaceApi extends BaseApi {
         return new CallbackVideoSurface(bufferFormat, bufferAllocatorCallback, renderCallback, lockBuffers, VideoSurfaceAdapters.getVideoSurfaceAdapter(), cleanupCallback);
     }
 
+    /**
+     * Create a new video surface for "direct" rendering via callbacks, using a ring of frame buffers.
+     * <p>
+     * The allocator and cleanup callbacks are invoked once for each buffer in the ring.
+     *
+     * @param bufferAllocatorCallback buffer format callback
+     * @param renderCallback render callback
+     * @param lockBuffers <code>true</code> if the video buffer should be locked; <code>false</code> if it should not
+     * @param bufferCount number of frame buffers, use 2 for double-buffering or 3 for triple-buffering
+     * @return video surface
+     */
+    public CallbackVideoSurface newVideoSurface(BufferFormat bufferFormat, BufferAllocatorCallback bufferAllocatorCallback, RenderCallback renderCallback, boolean lockBuffers, BufferCleanupCallback cleanupCallback, int bufferCount) {
+        return new CallbackVideoSurface(bufferFormat, bufferAllocatorCallback, renderCallback, lockBuffers, VideoSurfaceAdapters.getVideoSurfaceAdapter(), cleanupCallback, bufferCount);
+    }
+
 }
@@ -20,6 +20,7 @@
 package org.watermedia.videolan4j.player.base;
 
 import org.watermedia.videolan4j.player.base.callback.AudioCallback;
+import org.watermedia.videolan4j.player.base.callback.AudioLevelMeter;
 import org.watermedia.videolan4j.VideoLan4J;
 import org.watermedia.videolan4j.binding.internal.libvlc_audio_output_device_t;
 import org.watermedia.videolan4j.binding.internal.libvlc_equalizer_t;
@@ -351,6 +352,37 @@ public final class AudioApi extends BaseApi implements EqualizerListener {
         audioCallbacks.callback(format, rate, channels, audioCallback, manageVolume);
     }
 
+    /**
+     * Enable or disable measuring audio levels on the audio callback path.
+     * <p>
+     * Levels are only measured while audio callbacks are enabled, see
+     * {@link #callback(String, int, int, AudioCallback, boolean)}, and the sample format is supported by
+     * {@link AudioLevelMeter}. Metering may be enabled before or after the callbacks.
+     *
+     * @param levelMetering <code>true</code> to measure audio levels; <code>false</code> not to
+     */
+    public void setLevelMetering(boolean levelMetering) {
+        audioCallbacks.levelMetering(levelMetering);
+    }
+
+    /**
+     * Test whether measuring audio levels is enabled.
+     *
+     * @return <code>true</code> if audio levels are measured; <code>false</code> if not
+     */
+    public boolean isLevelMetering() {
+        return audioCallbacks.levelMetering();
+    }
+
+    /**
+     * Get the audio level meter, to read the most recent levels from any thread.
+     *
+     * @return level meter, or <code>null</code> if audio levels are not being measured
+     */
+    public AudioLevelMeter levelMeter() {
+        return audioCallbacks.levelMeter();
+    }
+
     @Override
     protected void release() {
         masterVolume = 0;
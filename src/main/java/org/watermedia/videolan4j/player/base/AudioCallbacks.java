@@ -20,7 +20,9 @@
 package org.watermedia.videolan4j.player.base;
 
 import com.sun.jna.Pointer;
+import org.watermedia.videolan4j.VideoLan4J;
 import org.watermedia.videolan4j.player.base.callback.AudioCallback;
+import org.watermedia.videolan4j.player.base.callback.AudioLevelMeter;
 import org.watermedia.videolan4j.binding.lib.LibVlc;
 import org.watermedia.videolan4j.binding.internal.libvlc_audio_drain_cb;
 import org.watermedia.videolan4j.binding.internal.libvlc_audio_flush_cb;
@@ -36,6 +38,10 @@ import org.watermedia.videolan4j.binding.internal.libvlc_audio_set_volume_cb;
  * component used to process the audio samples in some way (like playing them).
  * <p>
  * Once callbacks are enabled for a media player, they can <em>not</em> be disabled.
+ * <p>
+ * Optionally, an {@link AudioLevelMeter} measures every block of samples before it is handed to the audio callback.
+ * <p>
+ * The timestamp of every block of samples is recorded by the {@link PresentationClock} of the media player.
  */
 final class AudioCallbacks {
 
@@ -50,15 +56,59 @@ final class AudioCallbacks {
 
     private AudioCallback audioCallback;
 
+    private String format;
+
+    private int rate;
+
+    private int channels;
+
+    private boolean levelMetering;
+
+    private volatile AudioLevelMeter levelMeter;
+
     AudioCallbacks(MediaPlayer mediaPlayer) {
         this.mediaPlayer = mediaPlayer;
     }
 
     void callback(String format, int rate, int channels, AudioCallback audioCallback, boolean manageVolume) {
         this.audioCallback = audioCallback;
+        synchronized (this) {
+            this.format = format;
+            this.rate = rate;
+            this.channels = channels;
+            updateLevelMeter();
+        }
+        mediaPlayer.presentationClock().sync();
         enableCallbacks(format, rate, channels, manageVolume);
     }
 
+    synchronized void levelMetering(boolean levelMetering) {
+        this.levelMetering = levelMetering;
+        updateLevelMeter();
+    }
+
+    synchronized boolean levelMetering() {
+        return levelMetering;
+    }
+
+    AudioLevelMeter levelMeter() {
+        return levelMeter;
+    }
+
+    private void updateLevelMeter() {
+        if (!levelMetering || format == null) {
+            levelMeter = null;
+        } else if (!AudioLevelMeter.isSupported(format)) {
+            VideoLan4J.LOGGER.warn("Audio level metering is not supported for sample format " + format);
+            levelMeter = null;
+        } else {
+            final AudioLevelMeter current = levelMeter;
+            if (current == null || !current.format().equals(format) || current.rate() != rate || current.channels() != channels) {
+                levelMeter = new AudioLevelMeter(format, rate, channels);
+            }
+        }
+    }
+
     private void enableCallbacks(String format, int rate, int channels, boolean manageVolume) {
         LibVlc.libvlc_audio_set_format(mediaPlayer.mediaPlayerInstance(), format, rate, channels);
         LibVlc.libvlc_audio_set_callbacks(mediaPlayer.mediaPlayerInstance(), playCallback, pauseCallback, resumeCallback, flushCallback, drainCallback, null);
@@ -74,6 +124,11 @@ final class AudioCallbacks {
 
         @Override
         public void play(Pointer data, Pointer samples, int count, long pts) {
+            final AudioLevelMeter meter = levelMeter;
+            if (meter != null) {
+                meter.measure(samples, count);
+            }
+            mediaPlayer.presentationClock().audio(pts);
             audioCallback.play(mediaPlayer, samples, count, pts);
         }
     }
@@ -107,6 +162,7 @@ final class AudioCallbacks {
 
         @Override
         public void flush(Pointer data, long pts) {
+            mediaPlayer.presentationClock().flush();
             audioCallback.flush(mediaPlayer, pts);
         }
     }
@@ -129,7 +185,7 @@ final class AudioCallbacks {
 
         @Override
         public void setVolume(Pointer data, float volume, int mute) {
-            audioCallback.setVolume(volume, mute == 0);
+            audioCallback.setVolume(volume, mute != 0);
         }
 
     }
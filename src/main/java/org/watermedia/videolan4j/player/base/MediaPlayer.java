@@ -88,6 +88,8 @@ public class MediaPlayer {
     private final TitleApi      titleApi;
     private final VideoApi      videoApi;
 
+    private final PresentationClock presentationClock = new PresentationClock();
+
     /**
      * Create a new media player.
      *
@@ -208,6 +210,15 @@ public class MediaPlayer {
         return videoApi;
     }
 
+    /**
+     * Get the presentation clock, unifying the audio and video timelines of this media player.
+     *
+     * @return presentation clock
+     */
+    public final PresentationClock presentationClock() {
+        return presentationClock;
+    }
+
     /**
      * Set an alternate media renderer.
      * <p>
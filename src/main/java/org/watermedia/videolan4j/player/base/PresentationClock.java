@@ -0,0 +1,337 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.base;
+
+import org.watermedia.videolan4j.binding.lib.LibVlc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Presentation clock for a media player, unifying the audio and video timelines.
+ * <p>
+ * The native library schedules both audio and video on its own clock, the same clock as
+ * {@link LibVlc#libvlc_clock()}: the timestamp of a block of samples delivered to an audio callback is the time the
+ * first sample should be heard, and a video callback picture is displayed at the time it should be seen. Neither
+ * deadline accounts for what an application does after the native library hands over the samples or the picture, so
+ * this clock measures both sides:
+ * <ul>
+ *     <li>the audio delay - how long after its timestamp a sample is actually heard, from the lead of each block over
+ *     the clock when it is delivered and the configured {@link #setAudioOutputLatency(long) audio output latency};</li>
+ *     <li>the video delay - how long after its display time a frame is actually seen, from the time the render
+ *     callback takes to finish with each frame and the configured {@link #setVideoOutputLatency(long) video output
+ *     latency}.</li>
+ * </ul>
+ * The difference between the two is the audio/video drift, positive when video is presented later than the audio it
+ * belongs with.
+ * <p>
+ * Audio is the master: {@link #now()} is the time on the native clock of the sample being heard right now, and a
+ * frame is in sync when it is presented at its {@link #presentationTime(long) presentation time}. When audio is played
+ * by the native library itself rather than an audio callback there is no audio delay to measure and the native audio
+ * output is taken to play on schedule.
+ * <p>
+ * Audio timings are recorded on the native audio thread and video timings on whichever thread runs the render
+ * callback; each side only ever has a single writer and every estimate is published through a volatile field, so
+ * reading the clock never blocks either of them.
+ * <p>
+ * All times are in microseconds.
+ */
+public final class PresentationClock {
+
+    /**
+     * Weight of a new sample in the smoothed estimates, as a right shift (one sixteenth).
+     */
+    private static final int SMOOTHING = 4;
+
+    /**
+     * Number of recent frames whose display times are kept, must be a power of two.
+     */
+    private static final int FRAMES = 16;
+
+    private volatile long offset;
+
+    private volatile long audioOutputLatency;
+
+    private volatile long videoOutputLatency;
+
+    /**
+     * Smoothed lead of audio timestamps over the clock when the samples are delivered, scaled by 2^SMOOTHING.
+     */
+    private volatile long audioLead;
+
+    private volatile boolean audio;
+
+    /**
+     * Smoothed time taken by the render callback after the display time of a frame, scaled by 2^SMOOTHING.
+     */
+    private volatile long renderLatency;
+
+    private volatile boolean video;
+
+    private volatile long maxDrift;
+
+    /**
+     * Display times of recent frames, as pairs of sequence number and display time.
+     */
+    private final AtomicLongArray frames = new AtomicLongArray(FRAMES * 2);
+
+    PresentationClock() {
+        sync();
+        for (int index = 0; index < FRAMES; index++) {
+            frames.set(index * 2, -1);
+        }
+    }
+
+    /**
+     * Measure the offset between the native clock and the Java clock.
+     * <p>
+     * This is done whenever an audio or video format is negotiated, rather than calling into the native library for
+     * every reading.
+     */
+    public void sync() {
+        this.offset = LibVlc.libvlc_clock() - System.nanoTime() / 1000;
+    }
+
+    /**
+     * Get the current time on the native clock.
+     *
+     * @return time
+     */
+    public long clockTime() {
+        return System.nanoTime() / 1000 + offset;
+    }
+
+    /**
+     * Convert a time on the native clock to the equivalent {@link System#nanoTime()}, to schedule presentation.
+     *
+     * @param clockTime time on the native clock
+     * @return equivalent value of {@link System#nanoTime()}
+     */
+    public long nanoTime(long clockTime) {
+        return (clockTime - offset) * 1000;
+    }
+
+    /**
+     * Get the current presentation time - the time on the native clock of the audio being heard right now.
+     *
+     * @return presentation time
+     */
+    public long now() {
+        return clockTime() - audioDelay();
+    }
+
+    /**
+     * Set the latency of the audio output after the audio callback, for example the duration of samples queued in an
+     * application buffer plus the latency of the audio device.
+     *
+     * @param audioOutputLatency latency
+     */
+    public void setAudioOutputLatency(long audioOutputLatency) {
+        this.audioOutputLatency = Math.max(0, audioOutputLatency);
+    }
+
+    /**
+     * Get the latency of the audio output after the audio callback.
+     *
+     * @return latency
+     */
+    public long audioOutputLatency() {
+        return audioOutputLatency;
+    }
+
+    /**
+     * Set the latency of the video output after the render callback has finished with a frame, for example the wait
+     * for the next vertical sync.
+     *
+     * @param videoOutputLatency latency
+     */
+    public void setVideoOutputLatency(long videoOutputLatency) {
+        this.videoOutputLatency = Math.max(0, videoOutputLatency);
+    }
+
+    /**
+     * Get the latency of the video output after the render callback has finished with a frame.
+     *
+     * @return latency
+     */
+    public long videoOutputLatency() {
+        return videoOutputLatency;
+    }
+
+    /**
+     * Get the estimated time between the timestamp of a sample and the sample actually being heard.
+     * <p>
+     * A negative delay means the audio is heard early.
+     *
+     * @return audio delay, or zero if audio is not delivered to an audio callback
+     */
+    public long audioDelay() {
+        return audio ? audioOutputLatency - (audioLead >> SMOOTHING) : 0;
+    }
+
+    /**
+     * Get the estimated time between the display time of a frame and the frame actually being seen.
+     *
+     * @return video delay
+     */
+    public long videoDelay() {
+        return (video ? renderLatency >> SMOOTHING : 0) + videoOutputLatency;
+    }
+
+    /**
+     * Get the audio/video drift.
+     *
+     * @return drift, positive when video is presented later than audio
+     */
+    public long drift() {
+        return videoDelay() - audioDelay();
+    }
+
+    /**
+     * Get the largest magnitude of drift observed since the clock was last reset.
+     *
+     * @return maximum drift
+     */
+    public long maxDrift() {
+        return maxDrift;
+    }
+
+    /**
+     * Get the display time of a recent frame.
+     *
+     * @param sequence sequence number of the frame, as passed to the render callback
+     * @return display time on the native clock, or <code>-1</code> if the frame is no longer known
+     */
+    public long frameTime(long sequence) {
+        final int index = (int) (sequence & (FRAMES - 1)) * 2;
+        if (frames.get(index) != sequence) {
+            return -1;
+        }
+        final long displayTime = frames.get(index + 1);
+        // The slot may have been reused for a newer frame while it was read
+        return frames.get(index) == sequence ? displayTime : -1;
+    }
+
+    /**
+     * Get the estimated time a recent frame is seen, if presented as soon as the render callback has finished with it.
+     *
+     * @param sequence sequence number of the frame, as passed to the render callback
+     * @return estimated display time on the native clock, or <code>-1</code> if the frame is no longer known
+     */
+    public long displayTime(long sequence) {
+        final long frameTime = frameTime(sequence);
+        return frameTime < 0 ? -1 : frameTime + videoDelay();
+    }
+
+    /**
+     * Get the time on the native clock a recent frame should be seen to be in sync with the audio.
+     * <p>
+     * Use {@link #nanoTime(long)} to schedule the presentation, allowing for the video output latency.
+     *
+     * @param sequence sequence number of the frame, as passed to the render callback
+     * @return presentation time on the native clock, or <code>-1</code> if the frame is no longer known
+     */
+    public long presentationTime(long sequence) {
+        final long frameTime = frameTime(sequence);
+        return frameTime < 0 ? -1 : frameTime + audioDelay();
+    }
+
+    /**
+     * Reset the measured delays, for example after reconfiguring the outputs.
+     */
+    public void reset() {
+        this.audio = false;
+        this.audioLead = 0;
+        this.video = false;
+        this.renderLatency = 0;
+        this.maxDrift = 0;
+    }
+
+    /**
+     * Record a block of samples delivered to an audio callback.
+     *
+     * @param pts timestamp of the first sample
+     */
+    void audio(long pts) {
+        final long lead = pts - clockTime();
+        if (audio) {
+            this.audioLead += lead - (audioLead >> SMOOTHING);
+        } else {
+            this.audioLead = lead << SMOOTHING;
+            this.audio = true;
+        }
+        updateDrift();
+    }
+
+    /**
+     * Start measuring the audio lead afresh, when the audio is flushed.
+     */
+    void flush() {
+        this.audio = false;
+    }
+
+    /**
+     * Record a frame displayed by the native library.
+     *
+     * @param sequence sequence number of the frame
+     * @param displayTime time the frame was displayed
+     */
+    public void frame(long sequence, long displayTime) {
+        final int index = (int) (sequence & (FRAMES - 1)) * 2;
+        frames.set(index, -1);
+        frames.set(index + 1, displayTime);
+        frames.set(index, sequence);
+    }
+
+    /**
+     * Record a frame the render callback has finished with.
+     *
+     * @param displayTime time the frame was displayed
+     * @param finished time the render callback finished
+     */
+    public void rendered(long displayTime, long finished) {
+        final long latency = finished - displayTime;
+        if (video) {
+            this.renderLatency += latency - (renderLatency >> SMOOTHING);
+        } else {
+            this.renderLatency = latency << SMOOTHING;
+            this.video = true;
+        }
+        updateDrift();
+    }
+
+    private void updateDrift() {
+        final long drift = Math.abs(drift());
+        // Racing writers may lose an update, the next sample corrects it
+        if (drift > maxDrift) {
+            this.maxDrift = drift;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(120).append(getClass().getSimpleName()).append('[')
+            .append("audioDelay=").append(audioDelay()).append(',')
+            .append("videoDelay=").append(videoDelay()).append(',')
+            .append("drift=").append(drift()).append(',')
+            .append("maxDrift=").append(maxDrift).append(']')
+            .toString();
+    }
+
+}
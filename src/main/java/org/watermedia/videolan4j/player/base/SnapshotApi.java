@@ -39,6 +39,11 @@ public final class SnapshotApi extends BaseApi {
      */
     private String snapshotDirectoryName;
 
+    /**
+     * Optional source of in-memory snapshots, registered by the video surface.
+     */
+    private volatile SnapshotSource captureSource;
+
     SnapshotApi(MediaPlayer mediaPlayer) {
         super(mediaPlayer);
     }
@@ -54,6 +59,55 @@ public final class SnapshotApi extends BaseApi {
         this.snapshotDirectoryName = snapshotDirectoryName;
     }
 
+    /**
+     * Set the source used to capture snapshots directly from memory.
+     * <p>
+     * This is ordinarily set by the video surface when it is attached to the media player, applications should not
+     * normally need to call this method.
+     *
+     * @param captureSource snapshot source, or <code>null</code> to always use the native snapshot function
+     */
+    public void setCaptureSource(SnapshotSource captureSource) {
+        this.captureSource = captureSource;
+    }
+
+    /**
+     * Capture a snapshot of the currently playing video.
+     * <p>
+     * When the video surface has the decoded frames in memory, e.g. a callback video surface, the most recently
+     * displayed frame is copied straight into the image, otherwise this falls back to {@link #get()}.
+     *
+     * @return snapshot image, or <code>null</code> if a snapshot could not be taken
+     */
+    public BufferedImage capture() {
+        return capture(0, 0);
+    }
+
+    /**
+     * Capture a snapshot of the currently playing video.
+     * <p>
+     * When the video surface has the decoded frames in memory, e.g. a callback video surface, the most recently
+     * displayed frame is copied straight into the image, otherwise this falls back to {@link #get(int, int)}.
+     * <p>
+     * If one of width or height is zero the original image aspect ratio will be preserved.
+     * <p>
+     * If both width and height are zero, the original image size will be used.
+     *
+     * @param width desired image width
+     * @param height desired image height
+     * @return snapshot image, or <code>null</code> if a snapshot could not be taken
+     */
+    public BufferedImage capture(int width, int height) {
+        SnapshotSource captureSource = this.captureSource;
+        if (captureSource != null) {
+            BufferedImage image = captureSource.capture(width, height);
+            if (image != null) {
+                return image;
+            }
+        }
+        return get(width, height);
+    }
+
     /**
      * Save a snapshot of the currently playing video.
      * <p>
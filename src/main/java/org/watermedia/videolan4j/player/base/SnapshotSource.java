@@ -0,0 +1,44 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.base;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Specification for a component able to provide a snapshot of the current video frame directly from memory.
+ * <p>
+ * A snapshot source is registered with the {@link SnapshotApi} by video surfaces that have the decoded frames in
+ * memory, so a snapshot need not be written to and read back from a file by the native library.
+ */
+public interface SnapshotSource {
+
+    /**
+     * Capture the current video frame.
+     * <p>
+     * If one of width or height is zero the original image aspect ratio will be preserved. If both width and height
+     * are zero, the original image size will be used.
+     *
+     * @param width desired image width
+     * @param height desired image height
+     * @return snapshot image, or <code>null</code> if no frame is available
+     */
+    BufferedImage capture(int width, int height);
+
+}
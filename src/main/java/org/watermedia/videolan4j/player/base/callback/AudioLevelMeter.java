@@ -0,0 +1,486 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.base.callback;
+
+import com.sun.jna.Pointer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures peak, RMS and short-term loudness of audio samples as they pass through the audio callbacks.
+ * <p>
+ * Samples are measured incrementally, block by block, on the native audio thread. Each block is converted to floating
+ * point with a unit-stride loop into a pre-allocated interleaved array, so measuring never allocates. Peaks and sums of
+ * squares are accumulated for each position in a short run of frames, element by element with no reduction in the
+ * loop, and only folded into channels once per block.
+ * <p>
+ * Loudness follows ITU-R BS.1770: every channel is K-weighted, and the short-term loudness is the mean square over a
+ * sliding three second window of 100 millisecond steps. All channels are given equal weight.
+ * <p>
+ * The most recent levels are published with a sequence lock, so any thread can read a consistent snapshot with
+ * {@link #levels(AudioLevels)} without ever blocking the audio thread.
+ * <p>
+ * The levels are measured on the decoded samples, before any volume or mute is applied.
+ */
+public final class AudioLevelMeter {
+
+    /**
+     * Sample formats that can be measured.
+     */
+    private static final String[] FORMATS = {"S16N", "S32N", "FL32", "FL64", "U8"};
+
+    /**
+     * Maximum number of frames converted at once, longer blocks are measured in several chunks.
+     */
+    private static final int CHUNK = 4096;
+
+    /**
+     * Number of frames in each run of the peak and sum-of-squares accumulators.
+     */
+    private static final int LANE_FRAMES = 64;
+
+    /**
+     * Time constant of the RMS smoothing, in seconds.
+     */
+    private static final double RMS_TIME_CONSTANT = 0.3;
+
+    /**
+     * Number of 100 millisecond steps in the short-term loudness window.
+     */
+    private static final int WINDOW_STEPS = 30;
+
+    private final String format;
+
+    private final int rate;
+
+    private final int channels;
+
+    /**
+     * Converted samples, interleaved as the native samples are.
+     */
+    private final float[] interleaved;
+
+    /**
+     * Peak and sum of squares for each sample position in a run of frames, folded into channels once per chunk.
+     */
+    private final float[] peaks;
+
+    private final float[] squares;
+
+    private final short[] s16;
+
+    private final int[] s32;
+
+    private final float[] fl32;
+
+    private final double[] fl64;
+
+    private final byte[] u8;
+
+    /**
+     * K-weighting filter coefficients, a pre-filter shelf followed by a high-pass.
+     */
+    private final double[] shelf;
+
+    private final double[] highPass;
+
+    /**
+     * K-weighting filter state, four values for each channel and stage.
+     */
+    private final double[] shelfState;
+
+    private final double[] highPassState;
+
+    private final double[] peak;
+
+    private final double[] meanSquare;
+
+    /**
+     * Frames in each 100 millisecond loudness step.
+     */
+    private final int stepFrames;
+
+    /**
+     * K-weighted sum of squares of each completed loudness step in the window.
+     */
+    private final double[] steps = new double[WINDOW_STEPS];
+
+    private int stepIndex;
+
+    private int stepCount;
+
+    private double stepSum;
+
+    private int stepFill;
+
+    private long samples;
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Published levels: peak and RMS for each channel, then loudness and sample count.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * Create an audio level meter.
+     *
+     * @param format sample format, as passed to the audio callbacks
+     * @param rate sample rate
+     * @param channels number of channels
+     * @throws IllegalArgumentException if the sample format is not supported
+     */
+    public AudioLevelMeter(String format, int rate, int channels) {
+        if (!isSupported(format)) {
+            throw new IllegalArgumentException("Unsupported sample format " + format);
+        }
+        this.format = format;
+        this.rate = rate;
+        this.channels = channels;
+        final int samples = CHUNK * channels;
+        this.interleaved = new float[samples];
+        this.peaks = new float[LANE_FRAMES * channels];
+        this.squares = new float[LANE_FRAMES * channels];
+        this.s16 = "S16N".equals(format) ? new short[samples] : null;
+        this.s32 = "S32N".equals(format) ? new int[samples] : null;
+        this.fl32 = "FL32".equals(format) ? new float[samples] : null;
+        this.fl64 = "FL64".equals(format) ? new double[samples] : null;
+        this.u8 = "U8".equals(format) ? new byte[samples] : null;
+        this.shelf = shelf(rate);
+        this.highPass = highPass(rate);
+        this.shelfState = new double[channels * 4];
+        this.highPassState = new double[channels * 4];
+        this.peak = new double[channels];
+        this.meanSquare = new double[channels];
+        this.stepFrames = Math.max(1, rate / 10);
+        this.published = new AtomicLongArray(channels * 2 + 2);
+        this.published.set(channels * 2, Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY));
+    }
+
+    /**
+     * Test whether a sample format can be measured.
+     *
+     * @param format sample format
+     * @return <code>true</code> if the format is supported; <code>false</code> if not
+     */
+    public static boolean isSupported(String format) {
+        for (final String supported : FORMATS) {
+            if (supported.equals(format)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the sample format measured.
+     *
+     * @return sample format
+     */
+    public String format() {
+        return this.format;
+    }
+
+    /**
+     * Get the sample rate measured.
+     *
+     * @return sample rate, in Hz
+     */
+    public int rate() {
+        return this.rate;
+    }
+
+    /**
+     * Get the number of channels measured.
+     *
+     * @return channel count
+     */
+    public int channels() {
+        return this.channels;
+    }
+
+    /**
+     * Measure a block of samples.
+     * <p>
+     * Must only be invoked by a single thread, normally the native audio thread.
+     *
+     * @param samples native sample data
+     * @param sampleCount number of samples (per channel)
+     */
+    public void measure(Pointer samples, int sampleCount) {
+        if (sampleCount <= 0) {
+            return;
+        }
+        for (int frame = 0; frame < sampleCount; frame += CHUNK) {
+            final int frames = Math.min(CHUNK, sampleCount - frame);
+            this.convert(samples, frame, frames);
+            this.measure(frames, frame == 0);
+        }
+        this.samples += sampleCount;
+        this.publish();
+    }
+
+    /**
+     * Read the most recent levels.
+     *
+     * @param levels levels to fill in
+     * @return the levels passed in
+     */
+    public AudioLevels levels(AudioLevels levels) {
+        levels.channels(this.channels);
+        final int loudnessIndex = this.channels * 2;
+        long before;
+        long after;
+        do {
+            before = this.version.get();
+            for (int channel = 0; channel < this.channels; channel++) {
+                levels.set(channel, Double.longBitsToDouble(this.published.get(channel * 2)), Double.longBitsToDouble(this.published.get(channel * 2 + 1)));
+            }
+            levels.set(Double.longBitsToDouble(this.published.get(loudnessIndex)), this.published.get(loudnessIndex + 1));
+            after = this.version.get();
+        } while ((before & 1) != 0 || before != after);
+        return levels;
+    }
+
+    /**
+     * Read the most recent levels.
+     *
+     * @return new levels
+     */
+    public AudioLevels levels() {
+        return this.levels(new AudioLevels());
+    }
+
+    /**
+     * Convert a chunk of interleaved native samples to floating point, keeping them interleaved.
+     */
+    private void convert(Pointer samples, int frame, int frames) {
+        final int count = frames * this.channels;
+        final long offset = (long) frame * this.channels;
+        final float[] interleaved = this.interleaved;
+        if (this.s16 != null) {
+            final short[] s16 = this.s16;
+            samples.read(offset * 2, s16, 0, count);
+            for (int i = 0; i < count; i++) {
+                interleaved[i] = s16[i] * (1.0f / 32768);
+            }
+        } else if (this.s32 != null) {
+            final int[] s32 = this.s32;
+            samples.read(offset * 4, s32, 0, count);
+            for (int i = 0; i < count; i++) {
+                interleaved[i] = s32[i] * (1.0f / 2147483648.0f);
+            }
+        } else if (this.fl32 != null) {
+            samples.read(offset * 4, interleaved, 0, count);
+        } else if (this.fl64 != null) {
+            final double[] fl64 = this.fl64;
+            samples.read(offset * 8, fl64, 0, count);
+            for (int i = 0; i < count; i++) {
+                interleaved[i] = (float) fl64[i];
+            }
+        } else {
+            final byte[] u8 = this.u8;
+            samples.read(offset, u8, 0, count);
+            for (int i = 0; i < count; i++) {
+                interleaved[i] = ((u8[i] & 0xff) - 128) * (1.0f / 128);
+            }
+        }
+    }
+
+    /**
+     * Measure a converted chunk.
+     *
+     * @param frames number of frames in the chunk
+     * @param first <code>true</code> if this is the first chunk of a block
+     */
+    private void measure(int frames, boolean first) {
+        final double smoothing = 1 - Math.exp(-frames / (RMS_TIME_CONSTANT * this.rate));
+        int done = 0;
+        while (done < frames) {
+            // Loudness steps may end part way through a chunk
+            final int length = Math.min(frames - done, this.stepFrames - this.stepFill);
+            double weighted = 0;
+            for (int channel = 0; channel < this.channels; channel++) {
+                weighted += this.kWeightedSumOfSquares(channel, done, length);
+            }
+            this.stepSum += weighted;
+            this.stepFill += length;
+            if (this.stepFill == this.stepFrames) {
+                this.steps[this.stepIndex] = this.stepSum;
+                this.stepIndex = (this.stepIndex + 1) % WINDOW_STEPS;
+                this.stepCount = Math.min(WINDOW_STEPS, this.stepCount + 1);
+                this.stepSum = 0;
+                this.stepFill = 0;
+            }
+            done += length;
+        }
+        this.accumulate(frames * this.channels);
+        for (int channel = 0; channel < this.channels; channel++) {
+            float peak = 0;
+            float sumOfSquares = 0;
+            for (int i = channel; i < this.squares.length; i += this.channels) {
+                peak = Math.max(peak, this.peaks[i]);
+                sumOfSquares += this.squares[i];
+            }
+            this.peak[channel] = first ? peak : Math.max(this.peak[channel], peak);
+            this.meanSquare[channel] += (sumOfSquares / frames - this.meanSquare[channel]) * smoothing;
+        }
+    }
+
+    /**
+     * Accumulate the peak and sum of squares of each sample position in a run of frames.
+     * <p>
+     * A run is a whole number of frames, so every position belongs to the same channel in every run. Each loop only
+     * stores to one array and carries no reduction, the peak is taken with a comparison rather than
+     * {@link Math#max(float, float)}, which has to order signed zeros and NaNs.
+     *
+     * @param count number of samples in the chunk
+     */
+    private void accumulate(int count) {
+        final float[] samples = this.interleaved;
+        final float[] peaks = this.peaks;
+        final float[] squares = this.squares;
+        final int lanes = squares.length;
+        Arrays.fill(peaks, 0);
+        Arrays.fill(squares, 0);
+        for (int run = 0; run < count; run += lanes) {
+            final int end = Math.min(lanes, count - run);
+            for (int i = 0; i < end; i++) {
+                final float value = samples[run + i];
+                squares[i] += value * value;
+            }
+            for (int i = 0; i < end; i++) {
+                final float magnitude = Math.abs(samples[run + i]);
+                peaks[i] = magnitude > peaks[i] ? magnitude : peaks[i];
+            }
+        }
+    }
+
+    /**
+     * K-weight part of a channel and sum the squares of the weighted samples.
+     * <p>
+     * The filters are recursive, each output depends on the previous ones, so this loop is inherently sequential.
+     */
+    private double kWeightedSumOfSquares(int channel, int from, int length) {
+        final float[] samples = this.interleaved;
+        final int channels = this.channels;
+        final double[] s = this.shelf;
+        final double[] h = this.highPass;
+        final int state = channel * 4;
+        double sx1 = this.shelfState[state], sx2 = this.shelfState[state + 1], sy1 = this.shelfState[state + 2], sy2 = this.shelfState[state + 3];
+        double hx1 = this.highPassState[state], hx2 = this.highPassState[state + 1], hy1 = this.highPassState[state + 2], hy2 = this.highPassState[state + 3];
+        double sum = 0;
+        for (int i = from * channels + channel, end = (from + length) * channels; i < end; i += channels) {
+            final double x = samples[i];
+            final double y = s[0] * x + s[1] * sx1 + s[2] * sx2 - s[3] * sy1 - s[4] * sy2;
+            sx2 = sx1;
+            sx1 = x;
+            sy2 = sy1;
+            sy1 = y;
+            final double z = h[0] * y + h[1] * hx1 + h[2] * hx2 - h[3] * hy1 - h[4] * hy2;
+            hx2 = hx1;
+            hx1 = y;
+            hy2 = hy1;
+            hy1 = z;
+            sum += z * z;
+        }
+        this.shelfState[state] = sx1;
+        this.shelfState[state + 1] = sx2;
+        this.shelfState[state + 2] = sy1;
+        this.shelfState[state + 3] = sy2;
+        this.highPassState[state] = hx1;
+        this.highPassState[state + 1] = hx2;
+        this.highPassState[state + 2] = hy1;
+        this.highPassState[state + 3] = hy2;
+        return sum;
+    }
+
+    private double loudness() {
+        if (this.stepCount == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double sum = 0;
+        for (int i = 0; i < this.stepCount; i++) {
+            sum += this.steps[i];
+        }
+        final double meanSquare = sum / ((double) this.stepCount * this.stepFrames);
+        return -0.691 + 10 * Math.log10(meanSquare);
+    }
+
+    private void publish() {
+        final double loudness = this.loudness();
+        final long version = this.version.get();
+        // Odd while the levels are being written
+        this.version.set(version + 1);
+        for (int channel = 0; channel < this.channels; channel++) {
+            this.published.set(channel * 2, Double.doubleToRawLongBits(this.peak[channel]));
+            this.published.set(channel * 2 + 1, Double.doubleToRawLongBits(Math.sqrt(this.meanSquare[channel])));
+        }
+        this.published.set(this.channels * 2, Double.doubleToRawLongBits(loudness));
+        this.published.set(this.channels * 2 + 1, this.samples);
+        this.version.set(version + 2);
+    }
+
+    /**
+     * Coefficients of the BS.1770 pre-filter, a high shelf modelling the acoustic effect of the head.
+     *
+     * @param rate sample rate
+     * @return coefficients b0, b1, b2, a1, a2
+     */
+    private static double[] shelf(int rate) {
+        final double f0 = 1681.974450955533;
+        final double gain = 3.999843853973347;
+        final double q = 0.7071752369554196;
+        final double k = Math.tan(Math.PI * f0 / rate);
+        final double vh = Math.pow(10, gain / 20);
+        final double vb = Math.pow(vh, 0.4996667741545416);
+        final double a0 = 1 + k / q + k * k;
+        return new double[] {
+            (vh + vb * k / q + k * k) / a0,
+            2 * (k * k - vh) / a0,
+            (vh - vb * k / q + k * k) / a0,
+            2 * (k * k - 1) / a0,
+            (1 - k / q + k * k) / a0
+        };
+    }
+
+    /**
+     * Coefficients of the BS.1770 RLB high-pass filter.
+     *
+     * @param rate sample rate
+     * @return coefficients b0, b1, b2, a1, a2
+     */
+    private static double[] highPass(int rate) {
+        final double f0 = 38.13547087602444;
+        final double q = 0.5003270373238773;
+        final double k = Math.tan(Math.PI * f0 / rate);
+        final double a0 = 1 + k / q + k * k;
+        return new double[] {
+            1,
+            -2,
+            1,
+            2 * (k * k - 1) / a0,
+            (1 - k / q + k * k) / a0
+        };
+    }
+
+}
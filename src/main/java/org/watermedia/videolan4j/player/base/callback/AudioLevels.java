@@ -0,0 +1,140 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.base.callback;
+
+import java.util.Arrays;
+
+/**
+ * Audio levels measured by an {@link AudioLevelMeter}.
+ * <p>
+ * Instances are filled in by {@link AudioLevelMeter#levels(AudioLevels)}, so a consumer polling the levels e.g. for
+ * every UI frame can re-use a single instance rather than allocating a new one each time.
+ * <p>
+ * Peak and RMS levels are linear, where 1 is digital full scale, see {@link #decibels(double)} to convert them.
+ */
+public final class AudioLevels {
+
+    private double[] peak = new double[0];
+
+    private double[] rms = new double[0];
+
+    private double loudness = Double.NEGATIVE_INFINITY;
+
+    private long samples;
+
+    /**
+     * Get the number of channels measured.
+     *
+     * @return channel count
+     */
+    public int channels() {
+        return this.peak.length;
+    }
+
+    /**
+     * Get the peak level of a channel over the most recent block of samples.
+     *
+     * @param channel channel index
+     * @return linear peak level
+     */
+    public double peak(int channel) {
+        return this.peak[channel];
+    }
+
+    /**
+     * Get the highest peak level over all channels for the most recent block of samples.
+     *
+     * @return linear peak level
+     */
+    public double peak() {
+        double peak = 0;
+        for (final double value : this.peak) {
+            peak = Math.max(peak, value);
+        }
+        return peak;
+    }
+
+    /**
+     * Get the RMS level of a channel, smoothed with a 300 millisecond time constant.
+     *
+     * @param channel channel index
+     * @return linear RMS level
+     */
+    public double rms(int channel) {
+        return this.rms[channel];
+    }
+
+    /**
+     * Get the short-term loudness, over the most recent three seconds.
+     *
+     * @return loudness, in LUFS, or negative infinity for silence
+     */
+    public double loudness() {
+        return this.loudness;
+    }
+
+    /**
+     * Get the total number of samples (per channel) measured so far.
+     *
+     * @return sample count
+     */
+    public long samples() {
+        return this.samples;
+    }
+
+    /**
+     * Convert a linear level to decibels relative to full scale.
+     *
+     * @param level linear level
+     * @return level, in dBFS, or negative infinity for silence
+     */
+    public static double decibels(double level) {
+        return 20 * Math.log10(level);
+    }
+
+    void set(int channel, double peak, double rms) {
+        this.peak[channel] = peak;
+        this.rms[channel] = rms;
+    }
+
+    void set(double loudness, long samples) {
+        this.loudness = loudness;
+        this.samples = samples;
+    }
+
+    void channels(int channels) {
+        if (this.peak.length != channels) {
+            this.peak = new double[channels];
+            this.rms = new double[channels];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(100)
+            .append(getClass().getSimpleName()).append('[')
+            .append("peak=").append(Arrays.toString(this.peak)).append(',')
+            .append("rms=").append(Arrays.toString(this.rms)).append(',')
+            .append("loudness=").append(this.loudness).append(',')
+            .append("samples=").append(this.samples).append(']')
+            .toString();
+    }
+
+}
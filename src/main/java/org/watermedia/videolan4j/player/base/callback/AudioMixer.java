@@ -0,0 +1,403 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.base.callback;
+
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Mixes the audio of several media players into a single output stream.
+ * <p>
+ * Each media player added to the mixer gets its own {@link AudioRingBuffer}, registered as the player's audio
+ * callback with the mixer's sample format, rate and channel count - the native library converts and resamples each
+ * player's audio to that common format, so the sources are already aligned when they reach the mixer. The audio
+ * sink then pulls the mixed stream with {@link #mix(ByteBuffer)}, summing whatever each source has queued.
+ * <p>
+ * Each source has its own gain, and the volume and mute requested by the native library for the player (e.g. via
+ * {@link org.watermedia.videolan4j.player.base.AudioApi#setVolume(int)}) are applied on top. A source that has
+ * nothing queued, because it is paused or has run out, simply contributes silence.
+ * <p>
+ * Mixing does not allocate, all working memory is allocated up front. Sources may be added and removed from any
+ * thread, but only one thread may mix at a time.
+ * <p>
+ * Audio callbacks can not be disabled once they are enabled for a media player, so a source must only be
+ * {@link Source#release() released} after its media player has been released.
+ */
+public final class AudioMixer {
+
+    /**
+     * Enumeration of the sample formats the mixer can work in.
+     */
+    public enum Format {
+
+        /**
+         * Signed 16-bit integer samples, in native byte order.
+         */
+        S16N(2),
+
+        /**
+         * 32-bit floating point samples, in native byte order.
+         */
+        FL32(4);
+
+        private final int sampleSize;
+
+        Format(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+
+        /**
+         * Get the size of a single sample for a single channel.
+         *
+         * @return size, in bytes
+         */
+        public int sampleSize() {
+            return this.sampleSize;
+        }
+    }
+
+    /**
+     * Default number of frames mixed in one pass.
+     */
+    public static final int DEFAULT_MAX_FRAMES = 4096;
+
+    private final Format format;
+
+    private final int rate;
+
+    private final int channels;
+
+    private final int blockSize;
+
+    /**
+     * Capacity of each source ring, in bytes.
+     */
+    private final int ringCapacity;
+
+    private final int maxFrames;
+
+    /**
+     * Samples read from a single source.
+     */
+    private final ByteBuffer scratch;
+
+    /**
+     * Sum of all sources.
+     */
+    private final float[] accumulator;
+
+    /**
+     * Sources, replaced as a whole whenever a source is added or removed so mixing never needs a lock.
+     */
+    private volatile Source[] sources = new Source[0];
+
+    private volatile float gain = 1.0f;
+
+    /**
+     * Create an audio mixer.
+     *
+     * @param format sample format
+     * @param rate sample rate
+     * @param channels number of channels
+     * @param bufferMillis amount of audio each source can queue, in milliseconds
+     */
+    public AudioMixer(Format format, int rate, int channels, int bufferMillis) {
+        this(format, rate, channels, bufferMillis, DEFAULT_MAX_FRAMES);
+    }
+
+    /**
+     * Create an audio mixer.
+     *
+     * @param format sample format
+     * @param rate sample rate
+     * @param channels number of channels
+     * @param bufferMillis amount of audio each source can queue, in milliseconds
+     * @param maxFrames number of frames mixed in one pass, larger requests are mixed in several passes
+     */
+    public AudioMixer(Format format, int rate, int channels, int bufferMillis, int maxFrames) {
+        this.format = format;
+        this.rate = rate;
+        this.channels = channels;
+        this.blockSize = format.sampleSize() * channels;
+        this.ringCapacity = (int) ((long) rate * bufferMillis / 1000) * this.blockSize;
+        this.maxFrames = maxFrames;
+        this.scratch = ByteBuffer.allocateDirect(maxFrames * this.blockSize).order(ByteOrder.nativeOrder());
+        this.accumulator = new float[maxFrames * channels];
+    }
+
+    /**
+     * Add a media player to the mix.
+     * <p>
+     * This enables audio callbacks on the media player, it must be invoked before the media is played.
+     *
+     * @param mediaPlayer media player
+     * @return source
+     */
+    public Source addSource(MediaPlayer mediaPlayer) {
+        final Source source = new Source(mediaPlayer, new AudioRingBuffer(this.blockSize, this.rate, this.ringCapacity));
+        mediaPlayer.audio().callback(this.format.name(), this.rate, this.channels, source.ring, true);
+        synchronized (this) {
+            final Source[] sources = Arrays.copyOf(this.sources, this.sources.length + 1);
+            sources[sources.length - 1] = source;
+            this.sources = sources;
+        }
+        return source;
+    }
+
+    /**
+     * Remove a source from the mix.
+     * <p>
+     * The media player keeps delivering audio to the source, which simply overruns, until the media player is
+     * released.
+     *
+     * @param source source to remove
+     */
+    public synchronized void removeSource(Source source) {
+        final Source[] sources = this.sources;
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] == source) {
+                final Source[] remaining = new Source[sources.length - 1];
+                System.arraycopy(sources, 0, remaining, 0, i);
+                System.arraycopy(sources, i + 1, remaining, i, sources.length - i - 1);
+                this.sources = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the number of sources in the mix.
+     *
+     * @return source count
+     */
+    public int sourceCount() {
+        return this.sources.length;
+    }
+
+    /**
+     * Set the gain applied to the mixed output.
+     *
+     * @param gain gain, where 1 leaves the output unchanged
+     */
+    public void setGain(float gain) {
+        this.gain = gain;
+    }
+
+    /**
+     * Get the gain applied to the mixed output.
+     *
+     * @return gain
+     */
+    public float gain() {
+        return this.gain;
+    }
+
+    /**
+     * Get the sample format of the mixed output.
+     *
+     * @return sample format
+     */
+    public Format format() {
+        return this.format;
+    }
+
+    /**
+     * Get the sample rate of the mixed output.
+     *
+     * @return sample rate, in Hz
+     */
+    public int rate() {
+        return this.rate;
+    }
+
+    /**
+     * Get the number of channels of the mixed output.
+     *
+     * @return channel count
+     */
+    public int channels() {
+        return this.channels;
+    }
+
+    /**
+     * Get the size of one frame, i.e. one sample for every channel.
+     *
+     * @return size, in bytes
+     */
+    public int blockSize() {
+        return this.blockSize;
+    }
+
+    /**
+     * Mix the sources into an output buffer.
+     * <p>
+     * The output buffer is filled with as many whole frames as fit, in the mixer's sample format and native byte order.
+     * Sources with too little audio queued contribute silence for the rest of the buffer. Samples out of range after
+     * mixing are clipped.
+     *
+     * @param output buffer to receive the mixed audio, its position is advanced by the number of bytes written
+     * @return number of bytes written
+     */
+    public int mix(ByteBuffer output) {
+        final ByteOrder order = output.order();
+        output.order(ByteOrder.nativeOrder());
+        final int frames = output.remaining() / this.blockSize;
+        int done = 0;
+        while (done < frames) {
+            final int pass = Math.min(this.maxFrames, frames - done);
+            this.mixPass(pass);
+            this.write(output, pass * this.channels);
+            done += pass;
+        }
+        output.order(order);
+        return frames * this.blockSize;
+    }
+
+    private void mixPass(int frames) {
+        final int samples = frames * this.channels;
+        final float[] accumulator = this.accumulator;
+        Arrays.fill(accumulator, 0, samples, 0.0f);
+        final Source[] sources = this.sources;
+        for (final Source source : sources) {
+            this.scratch.clear();
+            this.scratch.limit(frames * this.blockSize);
+            final int read = source.ring.read(this.scratch) / this.format.sampleSize();
+            final float gain = source.effectiveGain();
+            if (gain == 0.0f) {
+                continue;
+            }
+            if (this.format == Format.S16N) {
+                final float scale = gain / 32768.0f;
+                for (int i = 0; i < read; i++) {
+                    accumulator[i] += this.scratch.getShort(i << 1) * scale;
+                }
+            } else {
+                for (int i = 0; i < read; i++) {
+                    accumulator[i] += this.scratch.getFloat(i << 2) * gain;
+                }
+            }
+        }
+    }
+
+    private void write(ByteBuffer output, int samples) {
+        final float[] accumulator = this.accumulator;
+        final float gain = this.gain;
+        if (this.format == Format.S16N) {
+            for (int i = 0; i < samples; i++) {
+                final float value = accumulator[i] * gain * 32768.0f;
+                output.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value)));
+            }
+        } else {
+            for (int i = 0; i < samples; i++) {
+                output.putFloat(Math.max(-1.0f, Math.min(1.0f, accumulator[i] * gain)));
+            }
+        }
+    }
+
+    /**
+     * A media player contributing to the mix.
+     */
+    public static final class Source {
+
+        private final MediaPlayer mediaPlayer;
+
+        private final AudioRingBuffer ring;
+
+        private volatile float gain = 1.0f;
+
+        private volatile boolean muted;
+
+        private Source(MediaPlayer mediaPlayer, AudioRingBuffer ring) {
+            this.mediaPlayer = mediaPlayer;
+            this.ring = ring;
+        }
+
+        /**
+         * Get the media player contributing this source.
+         *
+         * @return media player
+         */
+        public MediaPlayer mediaPlayer() {
+            return this.mediaPlayer;
+        }
+
+        /**
+         * Get the ring buffer queueing this source's audio, e.g. to check its fill level and counters.
+         *
+         * @return ring buffer
+         */
+        public AudioRingBuffer ring() {
+            return this.ring;
+        }
+
+        /**
+         * Set the gain applied to this source, on top of the volume requested by the native library.
+         *
+         * @param gain gain, where 1 leaves the source unchanged
+         */
+        public void setGain(float gain) {
+            this.gain = gain;
+        }
+
+        /**
+         * Get the gain applied to this source.
+         *
+         * @return gain
+         */
+        public float gain() {
+            return this.gain;
+        }
+
+        /**
+         * Mute or un-mute this source, independently of the mute state requested by the native library.
+         *
+         * @param muted <code>true</code> to mute; <code>false</code> to un-mute
+         */
+        public void setMuted(boolean muted) {
+            this.muted = muted;
+        }
+
+        /**
+         * Test whether this source is muted.
+         *
+         * @return <code>true</code> if muted; <code>false</code> if not
+         */
+        public boolean isMuted() {
+            return this.muted;
+        }
+
+        /**
+         * Free the native memory used by this source.
+         * <p>
+         * Must only be invoked after the source has been removed from the mixer and its media player has been released.
+         */
+        public void release() {
+            this.ring.release();
+        }
+
+        private float effectiveGain() {
+            return this.muted || this.ring.isMute() ? 0.0f : this.gain * this.ring.volume();
+        }
+    }
+
+}
@@ -0,0 +1,489 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.base.callback;
+
+import com.sun.jna.Pointer;
+import org.watermedia.videolan4j.ByteBufferFactory;
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Audio callback that queues decoded samples in a lock-free off-heap ring buffer, for an audio sink to consume on its
+ * own thread.
+ * <p>
+ * The native audio thread is the single producer: {@link #play(MediaPlayer, Pointer, int, long)} copies each block of
+ * samples into the ring and returns immediately, it never waits for the sink. If the ring is full the block is dropped
+ * and counted as an overrun. The audio sink is the single consumer, pulling samples with {@link #read(ByteBuffer)} at
+ * whatever pace its device needs them - a read that can not be satisfied in full while playing is counted as an
+ * underrun.
+ * <p>
+ * The presentation time stamp of each block is kept, so {@link #pts()} gives the time stamp of the next sample to be
+ * read.
+ * <p>
+ * The remaining native callbacks are applied as follows:
+ * <ul>
+ *     <li>flush - every sample queued so far is discarded, the next read starts with the first block played after the
+ *     flush;</li>
+ *     <li>pause - reads return nothing, and are not counted as underruns, until resumed;</li>
+ *     <li>drain - no more samples will arrive for the current track, the queued samples remain readable and running
+ *     out of them is not counted as an underrun, see {@link #isDrained()};</li>
+ *     <li>set volume - the volume and mute state are recorded for the sink to apply.</li>
+ * </ul>
+ * <p>
+ * Exactly one thread may read from the ring at a time. The ring must be {@link #release() released} when no longer
+ * needed to free the native memory, after the media player using it has been released.
+ */
+public final class AudioRingBuffer implements AudioCallback {
+
+    /**
+     * Default maximum number of blocks queued.
+     */
+    public static final int DEFAULT_MAX_BLOCKS = 256;
+
+    private final int blockSize;
+
+    private final int rate;
+
+    private final ByteBuffer memory;
+
+    /**
+     * Producer view of the ring memory.
+     */
+    private final ByteBuffer producerView;
+
+    /**
+     * Consumer view of the ring memory.
+     */
+    private final ByteBuffer consumerView;
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final long[] blockPts;
+
+    private final long[] blockStart;
+
+    private final int[] blockLength;
+
+    private final int blockMask;
+
+    /**
+     * Total bytes ever written, only written by the producer.
+     */
+    private volatile long writePosition;
+
+    /**
+     * Total blocks ever written, only written by the producer.
+     */
+    private volatile long writeBlock;
+
+    /**
+     * Total bytes ever read, only written by the consumer.
+     */
+    private volatile long readPosition;
+
+    /**
+     * Total blocks ever read, only written by the consumer.
+     */
+    private volatile long readBlock;
+
+    /**
+     * Most recent flush, the consumer skips everything written before it.
+     */
+    private volatile Mark flush = new Mark(0, 0);
+
+    private volatile boolean paused;
+
+    private volatile boolean draining;
+
+    private volatile float volume = 1.0f;
+
+    private volatile boolean mute;
+
+    private volatile long overruns;
+
+    private volatile long underruns;
+
+    /**
+     * Create an audio ring buffer holding up to {@link #DEFAULT_MAX_BLOCKS} blocks.
+     *
+     * @param blockSize block size for each sample, i.e. bytes per sample multiplied by the number of channels
+     * @param rate sample rate
+     * @param capacity capacity, in bytes, rounded up to a power of two
+     */
+    public AudioRingBuffer(int blockSize, int rate, int capacity) {
+        this(blockSize, rate, capacity, DEFAULT_MAX_BLOCKS);
+    }
+
+    /**
+     * Create an audio ring buffer.
+     *
+     * @param blockSize block size for each sample, i.e. bytes per sample multiplied by the number of channels
+     * @param rate sample rate
+     * @param capacity capacity, in bytes, rounded up to a power of two
+     * @param maxBlocks maximum number of blocks queued, rounded up to a power of two
+     */
+    public AudioRingBuffer(int blockSize, int rate, int capacity, int maxBlocks) {
+        this.blockSize = blockSize;
+        this.rate = rate;
+        this.capacity = powerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.memory = ByteBufferFactory.alloc(this.capacity);
+        this.producerView = this.memory.duplicate().order(ByteOrder.nativeOrder());
+        this.consumerView = this.memory.duplicate().order(ByteOrder.nativeOrder());
+        final int blocks = powerOfTwo(maxBlocks);
+        this.blockPts = new long[blocks];
+        this.blockStart = new long[blocks];
+        this.blockLength = new int[blocks];
+        this.blockMask = blocks - 1;
+    }
+
+    // === Producer, the native audio thread ============================================================================
+
+    @Override
+    public void play(MediaPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        this.draining = false;
+        final int length = sampleCount * this.blockSize;
+        final Mark flush = this.flush;
+        final long write = this.writePosition;
+        final long block = this.writeBlock;
+        final long read = Math.max(this.readPosition, flush.position);
+        final long readBlock = Math.max(this.readBlock, flush.block);
+        if (length > this.capacity - (write - read) || block - readBlock > this.blockMask) {
+            this.overruns++;
+            return;
+        }
+        final ByteBuffer source = samples.getByteBuffer(0, length);
+        final int offset = (int) (write & this.mask);
+        final int first = Math.min(length, this.capacity - offset);
+        copy(source, 0, this.producerView, offset, first);
+        if (first < length) {
+            copy(source, first, this.producerView, 0, length - first);
+        }
+        final int index = (int) (block & this.blockMask);
+        this.blockPts[index] = pts;
+        this.blockStart[index] = write;
+        this.blockLength[index] = length;
+        this.writeBlock = block + 1;
+        // Publishes the samples and the block to the consumer
+        this.writePosition = write + length;
+    }
+
+    @Override
+    public void pause(MediaPlayer mediaPlayer, long pts) {
+        this.paused = true;
+    }
+
+    @Override
+    public void resume(MediaPlayer mediaPlayer, long pts) {
+        this.paused = false;
+    }
+
+    @Override
+    public void flush(MediaPlayer mediaPlayer, long pts) {
+        // The producer may not move the read position, so leave a mark for the consumer to skip to - a read already in
+        // progress may see some of the flushed samples overwritten, they were being discarded anyway
+        this.flush = new Mark(this.writePosition, this.writeBlock);
+        this.draining = false;
+    }
+
+    @Override
+    public void drain(MediaPlayer mediaPlayer) {
+        this.draining = true;
+    }
+
+    @Override
+    public void setVolume(float volume, boolean mute) {
+        this.volume = volume;
+        this.mute = mute;
+    }
+
+    // === Consumer, the audio sink =====================================================================================
+
+    /**
+     * Read queued samples.
+     * <p>
+     * Whole samples are read, as many as are available up to the remaining space in the destination buffer.
+     *
+     * @param destination buffer to receive the samples, its position is advanced by the number of bytes read
+     * @return number of bytes read
+     */
+    public int read(ByteBuffer destination) {
+        this.skipFlushed();
+        if (this.paused) {
+            return 0;
+        }
+        final long read = this.readPosition;
+        final long available = this.writePosition - read;
+        final int wanted = destination.remaining() / this.blockSize * this.blockSize;
+        if (wanted > available && !this.draining) {
+            this.underruns++;
+        }
+        final int length = (int) Math.min(wanted, available);
+        if (length == 0) {
+            return 0;
+        }
+        final int offset = (int) (read & this.mask);
+        final int first = Math.min(length, this.capacity - offset);
+        copy(this.consumerView, offset, destination, first);
+        if (first < length) {
+            copy(this.consumerView, 0, destination, length - first);
+        }
+        this.advance(read + length);
+        return length;
+    }
+
+    /**
+     * Discard queued samples without reading them.
+     *
+     * @param length number of bytes to skip, rounded down to whole samples
+     * @return number of bytes skipped
+     */
+    public int skip(int length) {
+        this.skipFlushed();
+        final long read = this.readPosition;
+        final int skipped = (int) Math.min(length / this.blockSize * this.blockSize, this.writePosition - read);
+        this.advance(read + skipped);
+        return skipped;
+    }
+
+    /**
+     * Get the presentation time stamp of the next sample to be read.
+     * <p>
+     * This does not move the read position, so it may be invoked from any thread, although only the reading thread is
+     * guaranteed a consistent result while samples are being read.
+     *
+     * @return time stamp, in microseconds, or -1 if there are no queued samples
+     */
+    public long pts() {
+        final Mark flush = this.flush;
+        final long write = this.writePosition;
+        long read = this.readPosition;
+        long block = this.readBlock;
+        if (read < flush.position) {
+            // Samples before the last flush are discarded by the next read
+            read = flush.position;
+            block = flush.block;
+        }
+        if (write == read) {
+            return -1;
+        }
+        final int index = (int) (block & this.blockMask);
+        final long samples = (read - this.blockStart[index]) / this.blockSize;
+        return this.blockPts[index] + samples * 1000000L / this.rate;
+    }
+
+    /**
+     * Get the number of bytes queued.
+     * <p>
+     * This does not move the read position, so it may be invoked from any thread.
+     *
+     * @return number of bytes
+     */
+    public int available() {
+        // The flush mark is read first, the write position never falls behind it
+        final Mark flush = this.flush;
+        final long write = this.writePosition;
+        return (int) (write - Math.max(this.readPosition, flush.position));
+    }
+
+    /**
+     * Get the fraction of the ring currently filled with queued samples.
+     * <p>
+     * This does not move the read position, so it may be invoked from any thread.
+     *
+     * @return fill level, from 0 to 1
+     */
+    public double fillLevel() {
+        return (double) this.available() / this.capacity;
+    }
+
+    /**
+     * Move the read position past any samples discarded by a flush, only ever invoked by the reading thread.
+     */
+    private void skipFlushed() {
+        final Mark flush = this.flush;
+        if (this.readPosition < flush.position) {
+            this.readBlock = flush.block;
+            this.readPosition = flush.position;
+        }
+    }
+
+    /**
+     * Move the read position, releasing the blocks read completely.
+     *
+     * @param read new read position
+     */
+    private void advance(long read) {
+        long block = this.readBlock;
+        final long writeBlock = this.writeBlock;
+        while (block < writeBlock) {
+            final int index = (int) (block & this.blockMask);
+            if (this.blockStart[index] + this.blockLength[index] > read) {
+                break;
+            }
+            block++;
+        }
+        this.readBlock = block;
+        // Publishes the free space to the producer
+        this.readPosition = read;
+    }
+
+    // === State ========================================================================================================
+
+    /**
+     * Get the capacity of the ring.
+     *
+     * @return capacity, in bytes
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Get the block size for each sample.
+     *
+     * @return block size, in bytes
+     */
+    public int blockSize() {
+        return this.blockSize;
+    }
+
+    /**
+     * Get the sample rate.
+     *
+     * @return sample rate
+     */
+    public int rate() {
+        return this.rate;
+    }
+
+    /**
+     * Test whether playback is paused.
+     *
+     * @return <code>true</code> if paused; <code>false</code> if not
+     */
+    public boolean isPaused() {
+        return this.paused;
+    }
+
+    /**
+     * Test whether the native library has signalled the end of the samples for the current track, and every queued
+     * sample has been read.
+     *
+     * @return <code>true</code> if drained; <code>false</code> if not
+     */
+    public boolean isDrained() {
+        return this.draining && this.available() == 0;
+    }
+
+    /**
+     * Get the most recent volume requested by the native library.
+     *
+     * @return volume
+     */
+    public float volume() {
+        return this.volume;
+    }
+
+    /**
+     * Get the most recent mute state requested by the native library.
+     *
+     * @return mute state
+     */
+    public boolean isMute() {
+        return this.mute;
+    }
+
+    /**
+     * Get the number of blocks dropped because the ring was full.
+     *
+     * @return overrun count
+     */
+    public long overruns() {
+        return this.overruns;
+    }
+
+    /**
+     * Get the number of reads that could not be satisfied in full while playing.
+     *
+     * @return underrun count
+     */
+    public long underruns() {
+        return this.underruns;
+    }
+
+    /**
+     * Free the native memory.
+     * <p>
+     * The ring must not be used after it has been released.
+     */
+    public void release() {
+        ByteBufferFactory.dealloc(this.memory);
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * Copy into the ring.
+     * <p>
+     * Both buffers are owned by the calling thread, so their positions and limits can be used directly without creating
+     * duplicates.
+     */
+    private static void copy(ByteBuffer source, int sourceOffset, ByteBuffer target, int targetOffset, int length) {
+        source.clear();
+        source.position(sourceOffset);
+        source.limit(sourceOffset + length);
+        target.clear();
+        target.position(targetOffset);
+        target.put(source);
+    }
+
+    /**
+     * Copy out of the ring.
+     */
+    private static void copy(ByteBuffer source, int sourceOffset, ByteBuffer target, int length) {
+        source.clear();
+        source.position(sourceOffset);
+        source.limit(sourceOffset + length);
+        target.put(source);
+    }
+
+    /**
+     * Position in the ring, in bytes and blocks.
+     */
+    private static final class Mark {
+
+        private final long position;
+
+        private final long block;
+
+        private Mark(long position, long block) {
+            this.position = position;
+            this.block = block;
+        }
+    }
+
+}
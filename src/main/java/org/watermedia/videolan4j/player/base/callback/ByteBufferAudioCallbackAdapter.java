@@ -0,0 +1,97 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.base.callback;
+
+import com.sun.jna.Pointer;
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Implementation of an {@link AudioCallbackAdapter} that delivers the native sample data as a {@link ByteBuffer}.
+ * <p>
+ * Unlike {@link DefaultAudioCallbackAdapter}, the sample data is not copied into a new <code>byte[]</code> for each
+ * block of samples. Instead the consumer gets a read-only direct buffer over the native sample memory itself, in native
+ * byte order. The view is reused for as long as the native library delivers samples at the same address, which it
+ * commonly does as it recycles its block memory; a block at a new address costs two small buffer objects, the direct
+ * buffer over the memory and its read-only view.
+ * <p>
+ * The native memory is owned by the native library and is only valid for the duration of the call to
+ * {@link #onPlay(MediaPlayer, ByteBuffer, int, long)} - the buffer must not be used after that method returns. A
+ * consumer that needs to keep the samples must copy them, e.g. with a {@link SampleBufferPool}.
+ */
+public abstract class ByteBufferAudioCallbackAdapter extends AudioCallbackAdapter {
+
+    /**
+     * Fixed block size for each sample.
+     */
+    protected final int blockSize;
+
+    /**
+     * Native address of the most recent sample view, only used by the native audio thread.
+     */
+    private long viewAddress;
+
+    /**
+     * Most recent sample view, only used by the native audio thread.
+     */
+    private ByteBuffer view;
+
+    /**
+     * Create an audio callback.
+     *
+     * @param blockSize block size for each sample
+     */
+    public ByteBufferAudioCallbackAdapter(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public final void play(MediaPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        onPlay(mediaPlayer, view(samples, sampleCount * blockSize), sampleCount, pts);
+    }
+
+    private ByteBuffer view(Pointer samples, int size) {
+        final long address = Pointer.nativeValue(samples);
+        ByteBuffer view = this.view;
+        if (view == null || address != this.viewAddress || size > view.capacity()) {
+            view = samples.getByteBuffer(0, size).asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+            this.view = view;
+            this.viewAddress = address;
+        }
+        view.clear();
+        view.limit(size);
+        return view;
+    }
+
+    /**
+     * Template method to receive the decoded samples.
+     * <p>
+     * The sample buffer is only valid for the duration of this call.
+     *
+     * @param mediaPlayer media player
+     * @param data read-only view of the native sample data, positioned at the first sample
+     * @param sampleCount number of samples
+     * @param pts presentation time stamp
+     */
+    protected abstract void onPlay(MediaPlayer mediaPlayer, ByteBuffer data, int sampleCount, long pts);
+
+}
@@ -26,6 +26,8 @@ import org.watermedia.videolan4j.player.base.MediaPlayer;
  * Default implementation of an {@link AudioCallbackAdapter}.
  * <p>
  * This implementation gets the native sample data as a <code>byte[]</code> assuming a known fixed block size.
+ * <p>
+ * A new array is allocated for every block of samples, to avoid this see {@link ByteBufferAudioCallbackAdapter}.
  */
 public abstract class DefaultAudioCallbackAdapter extends AudioCallbackAdapter {
 
@@ -0,0 +1,140 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.base.callback;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of buffers used to keep copies of audio sample data beyond the audio callback.
+ * <p>
+ * Audio blocks arrive every few milliseconds, so copying each one into a newly allocated array produces a constant
+ * stream of garbage. Copies taken from this pool re-use buffers given back to it instead, sized in powers of two so
+ * blocks of slightly varying size share the same buffers.
+ * <p>
+ * The pool is thread-safe, so a buffer may be copied on the native audio thread and given back on a consumer thread.
+ *
+ * @see ByteBufferAudioCallbackAdapter
+ */
+public final class SampleBufferPool {
+
+    /**
+     * Default maximum number of buffers retained for each size.
+     */
+    public static final int DEFAULT_MAX_RETAINED = 16;
+
+    /**
+     * Number of distinct buffer sizes, the largest being 1GB.
+     */
+    private static final int SIZE_CLASSES = 31;
+
+    private final int maxRetained;
+
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<ByteBuffer>[] retained = (ArrayDeque<ByteBuffer>[]) new ArrayDeque<?>[SIZE_CLASSES];
+
+    /**
+     * Create a sample buffer pool retaining up to {@link #DEFAULT_MAX_RETAINED} buffers of each size.
+     */
+    public SampleBufferPool() {
+        this(DEFAULT_MAX_RETAINED);
+    }
+
+    /**
+     * Create a sample buffer pool.
+     *
+     * @param maxRetained maximum number of buffers retained for each size
+     */
+    public SampleBufferPool(int maxRetained) {
+        this.maxRetained = maxRetained;
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            this.retained[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Copy sample data into a pooled buffer.
+     * <p>
+     * The remaining bytes of the source buffer are copied, the position of the source buffer is not changed.
+     *
+     * @param data sample data
+     * @return buffer containing a copy of the sample data, positioned at zero with its limit set to the size of the data,
+     *         in native byte order
+     * @throws IllegalArgumentException if there is more than 1GB of sample data
+     */
+    public ByteBuffer copy(ByteBuffer data) {
+        final int size = data.remaining();
+        final ByteBuffer buffer = this.take(size);
+        buffer.put(data.duplicate());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Give a buffer obtained from {@link #copy(ByteBuffer)} back to the pool.
+     * <p>
+     * The buffer must not be used after it has been given back.
+     *
+     * @param buffer buffer
+     */
+    public void giveBack(ByteBuffer buffer) {
+        final int sizeClass = Integer.numberOfTrailingZeros(buffer.capacity());
+        if (buffer.capacity() != 1 << sizeClass || sizeClass >= SIZE_CLASSES) {
+            // Not a buffer from this pool
+            return;
+        }
+        synchronized (this.retained) {
+            final ArrayDeque<ByteBuffer> buffers = this.retained[sizeClass];
+            if (buffers.size() < this.maxRetained) {
+                buffers.addLast(buffer);
+            }
+        }
+    }
+
+    /**
+     * Free every retained buffer.
+     */
+    public void clear() {
+        synchronized (this.retained) {
+            for (final ArrayDeque<ByteBuffer> buffers : this.retained) {
+                buffers.clear();
+            }
+        }
+    }
+
+    private ByteBuffer take(int size) {
+        if (size > 1 << (SIZE_CLASSES - 1)) {
+            throw new IllegalArgumentException("Sample data of " + size + " bytes is larger than the largest pooled buffer");
+        }
+        final int sizeClass = size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+        ByteBuffer buffer = null;
+        synchronized (this.retained) {
+            buffer = this.retained[sizeClass].pollLast();
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(1 << sizeClass).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+}
@@ -159,10 +159,7 @@ public class CallbackMediaPlayerComponent extends MediaPlayerComponentBase imple
     }
 
     private RenderCallback init$buildClassLoaderSafeCallback(RenderCallback cb) {
-        return (mediaPlayer, nativeBuffers, bufferFormat) -> {
-            VideoLan4J.checkClassLoader(mediaPlayer.getClassLoader());
-            cb.display(mediaPlayer, nativeBuffers, bufferFormat);
-        };
+        return new ClassLoaderSafeRenderCallback(cb);
     }
 
     public CallbackMediaPlayerComponent(MediaPlayerFactory mediaPlayerFactory, boolean lockBuffers, BufferFormat bufferFormat, RenderCallback renderCallback, BufferAllocatorCallback bufferAllocatorCallback, BufferCleanupCallback cleanupCallback) {
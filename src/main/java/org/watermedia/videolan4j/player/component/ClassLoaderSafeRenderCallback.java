@@ -0,0 +1,68 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.component;
+
+import org.watermedia.videolan4j.BufferFormat;
+import org.watermedia.videolan4j.VideoLan4J;
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameDescriptor;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameView;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.RenderCallback;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Render callback wrapper that checks the context class loader of the native thread before delegating.
+ * <p>
+ * WATERMeDIA: avoids NPE on old versions of FORGE, where native callback threads have no usable class loader.
+ */
+final class ClassLoaderSafeRenderCallback implements RenderCallback {
+
+    private final RenderCallback renderCallback;
+
+    ClassLoaderSafeRenderCallback(RenderCallback renderCallback) {
+        this.renderCallback = renderCallback;
+    }
+
+    @Override
+    public void display(MediaPlayer mediaPlayer, ByteBuffer[] nativeBuffers, BufferFormat bufferFormat) {
+        VideoLan4J.checkClassLoader(mediaPlayer.getClassLoader());
+        renderCallback.display(mediaPlayer, nativeBuffers, bufferFormat);
+    }
+
+    @Override
+    public void display(MediaPlayer mediaPlayer, ByteBuffer[] nativeBuffers, FrameDescriptor descriptor, long sequence) {
+        VideoLan4J.checkClassLoader(mediaPlayer.getClassLoader());
+        renderCallback.display(mediaPlayer, nativeBuffers, descriptor, sequence);
+    }
+
+    @Override
+    public void display(MediaPlayer mediaPlayer, FrameView frame, long sequence) {
+        VideoLan4J.checkClassLoader(mediaPlayer.getClassLoader());
+        renderCallback.display(mediaPlayer, frame, sequence);
+    }
+
+    @Override
+    public void display(MediaPlayer mediaPlayer, FrameView frame, long sequence, boolean unchanged) {
+        VideoLan4J.checkClassLoader(mediaPlayer.getClassLoader());
+        renderCallback.display(mediaPlayer, frame, sequence, unchanged);
+    }
+
+}
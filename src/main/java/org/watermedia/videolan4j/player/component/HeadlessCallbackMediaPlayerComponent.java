@@ -0,0 +1,187 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.component;
+
+import org.watermedia.videolan4j.BufferFormat;
+import org.watermedia.videolan4j.VideoLan4J;
+import org.watermedia.videolan4j.factory.MediaPlayerFactory;
+import org.watermedia.videolan4j.player.embedded.EmbeddedMediaPlayer;
+import org.watermedia.videolan4j.player.embedded.videosurface.CallbackVideoSurface;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.BufferAllocatorCallback;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.BufferCleanupCallback;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.RenderCallback;
+
+/**
+ * Implementation of a callback "direct-rendering" media player for headless use.
+ * <p>
+ * This component wires together only a media player factory, an embedded media player and a callback video surface.
+ * Unlike {@link CallbackMediaPlayerComponent} it has no image painter, no default rendering to an image, no input
+ * event handling and no full-screen strategy, and it does not reference any AWT class - so using it does not cause the
+ * AWT toolkit to be loaded or initialised.
+ * <p>
+ * The client application must always provide its own render callback.
+ * <p>
+ * When the component is no longer needed, it should be released by invoking the {@link #release()} method.
+ */
+public class HeadlessCallbackMediaPlayerComponent implements MediaPlayerComponent {
+
+    /**
+     * Default factory initialisation arguments.
+     */
+    static final String[] DEFAULT_FACTORY_ARGUMENTS = MediaPlayerComponentDefaults.EMBEDDED_MEDIA_PLAYER_ARGS;
+
+    /**
+     * Flag true if this component created the media player factory, or false if it was supplied by the caller.
+     */
+    private final boolean ownFactory;
+
+    /**
+     * Media player factory.
+     */
+    protected final MediaPlayerFactory mediaPlayerFactory;
+
+    /**
+     * Media player.
+     */
+    private final EmbeddedMediaPlayer mediaPlayer;
+
+    /**
+     * Video surface.
+     */
+    private final CallbackVideoSurface videoSurface;
+
+    /**
+     * Construct a headless callback media player component.
+     *
+     * @param mediaPlayerFactory media player factory, or <code>null</code> to create one with default arguments
+     * @param lockBuffers <code>true</code> if the native video buffer should be locked; <code>false</code> if not
+     * @param bufferFormat buffer format
+     * @param renderCallback render callback
+     * @param bufferAllocatorCallback buffer allocator callback
+     * @param cleanupCallback executed BEFORE buffers got released
+     * @param bufferCount number of frame buffers, from 1 to {@link CallbackVideoSurface#MAX_BUFFER_COUNT}
+     */
+    public HeadlessCallbackMediaPlayerComponent(MediaPlayerFactory mediaPlayerFactory, boolean lockBuffers, BufferFormat bufferFormat, RenderCallback renderCallback, BufferAllocatorCallback bufferAllocatorCallback, BufferCleanupCallback cleanupCallback, int bufferCount) {
+        if (renderCallback == null) throw new IllegalArgumentException("renderCallback is required");
+        if (bufferAllocatorCallback == null) throw new IllegalArgumentException("bufferAllocatorCallback is required");
+
+        this.ownFactory = mediaPlayerFactory == null;
+        this.mediaPlayerFactory = mediaPlayerFactory == null ? new MediaPlayerFactory(DEFAULT_FACTORY_ARGUMENTS) : mediaPlayerFactory;
+
+        this.mediaPlayer = this.mediaPlayerFactory.mediaPlayers().newEmbeddedMediaPlayer();
+
+        // WATERMeDIA PATCH - start
+
+        // Here we patch callbacks adding a forced check for classloader
+        // avoiding NPE on old versions of FORGE
+        renderCallback = new ClassLoaderSafeRenderCallback(renderCallback);
+        bufferAllocatorCallback = init$buildClassLoaderSafeCallback(bufferAllocatorCallback);
+        // WATERMeDIA PATCH - end
+
+        this.videoSurface = this.mediaPlayerFactory.videoSurfaces().newVideoSurface(bufferFormat, bufferAllocatorCallback, renderCallback, lockBuffers, cleanupCallback, bufferCount);
+        this.mediaPlayer.videoSurface().set(this.videoSurface);
+
+        onAfterConstruct();
+    }
+
+    /**
+     * Construct a headless callback media player component with a single frame buffer.
+     *
+     * @param mediaPlayerFactory media player factory, or <code>null</code> to create one with default arguments
+     * @param lockBuffers <code>true</code> if the native video buffer should be locked; <code>false</code> if not
+     * @param bufferFormat buffer format
+     * @param renderCallback render callback
+     * @param bufferAllocatorCallback buffer allocator callback
+     * @param cleanupCallback executed BEFORE buffers got released
+     */
+    public HeadlessCallbackMediaPlayerComponent(MediaPlayerFactory mediaPlayerFactory, boolean lockBuffers, BufferFormat bufferFormat, RenderCallback renderCallback, BufferAllocatorCallback bufferAllocatorCallback, BufferCleanupCallback cleanupCallback) {
+        this(mediaPlayerFactory, lockBuffers, bufferFormat, renderCallback, bufferAllocatorCallback, cleanupCallback, CallbackVideoSurface.DEFAULT_BUFFER_COUNT);
+    }
+
+    // WATERMeDIA PATCH - start
+    private BufferAllocatorCallback init$buildClassLoaderSafeCallback(BufferAllocatorCallback cb) {
+        return buffers -> {
+            VideoLan4J.checkClassLoader(this.mediaPlayer.getClassLoader());
+            cb.allocatedBuffers(buffers);
+        };
+    }
+    // WATERMeDIA PATCH - end
+
+    /**
+     * Get the embedded media player reference.
+     * <p>
+     * An application uses this handle to control the media player, add listeners, and so on.
+     *
+     * @return media player
+     */
+    public final EmbeddedMediaPlayer mediaPlayer() {
+        return mediaPlayer;
+    }
+
+    /**
+     * Get the video surface.
+     * <p>
+     * An application uses this handle to configure frame delivery, e.g. frame-rate decimation or frame subscribers.
+     *
+     * @return video surface
+     */
+    public final CallbackVideoSurface videoSurface() {
+        return videoSurface;
+    }
+
+    /**
+     * Release the media player component and the associated native media player resources.
+     */
+    public final void release() {
+        onBeforeRelease();
+
+        mediaPlayer.release();
+
+        if (ownFactory) {
+            mediaPlayerFactory.release();
+        }
+
+        onAfterRelease();
+    }
+
+    @Override
+    public final MediaPlayerFactory mediaPlayerFactory() {
+        return mediaPlayerFactory;
+    }
+
+    /**
+     * Template method invoked at the end of the media player constructor.
+     */
+    protected void onAfterConstruct() {
+    }
+
+    /**
+     * Template method invoked immediately prior to releasing the media player and media player factory instances.
+     */
+    protected void onBeforeRelease() {
+    }
+
+    /**
+     * Template method invoked immediately after releasing the media player and media player factory instances.
+     */
+    protected void onAfterRelease() {
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded;
+
+import org.watermedia.videolan4j.player.base.SnapshotSource;
+import org.watermedia.videolan4j.player.embedded.videosurface.CallbackVideoSurface;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Snapshot source registered for a {@link CallbackVideoSurface}, deferring to the snapshot source of the surface.
+ * <p>
+ * The snapshot source of the surface, and with it the AWT imaging classes, is only created when a snapshot is first
+ * captured, so attaching a callback video surface costs nothing on a headless path that never takes one.
+ */
+final class DeferredSnapshotSource implements SnapshotSource {
+
+    private final CallbackVideoSurface videoSurface;
+
+    DeferredSnapshotSource(CallbackVideoSurface videoSurface) {
+        this.videoSurface = videoSurface;
+    }
+
+    @Override
+    public BufferedImage capture(int width, int height) {
+        return videoSurface.snapshotSource().capture(width, height);
+    }
+
+}
@@ -19,6 +19,10 @@
 
 package org.watermedia.videolan4j.player.embedded;
 
+import org.watermedia.videolan4j.media.TrackType;
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+import org.watermedia.videolan4j.player.base.MediaPlayerEventAdapter;
+import org.watermedia.videolan4j.player.embedded.videosurface.CallbackVideoSurface;
 import org.watermedia.videolan4j.player.embedded.videosurface.VideoSurface;
 
 /**
@@ -31,6 +35,28 @@ public final class VideoSurfaceApi extends BaseApi {
      */
     private VideoSurface videoSurface;
 
+    /**
+     * Visibility of the video.
+     */
+    private volatile Visibility visibility = Visibility.VISIBLE;
+
+    /**
+     * Video track to restore when the video becomes visible again, or -1 if there is none.
+     */
+    private volatile int hiddenTrack = -1;
+
+    /**
+     * <code>true</code> to seek to the current time when the video becomes visible again.
+     */
+    private volatile boolean resyncOnVisible = true;
+
+    /**
+     * Listener that keeps video deselected while hidden, if e.g. new media selects a video track, created on first use.
+     * <p>
+     * Guarded by this instance.
+     */
+    private VisibilityListener visibilityListener;
+
     VideoSurfaceApi(EmbeddedMediaPlayer mediaPlayer) {
         super(mediaPlayer);
     }
@@ -78,6 +104,11 @@ public final class VideoSurfaceApi extends BaseApi {
     public void attachVideoSurface() {
         if (videoSurface != null) {
             videoSurface.attach(mediaPlayer);
+            // Snapshots can be taken from memory rather than via a file when the frames are already there
+            mediaPlayer.snapshots().setCaptureSource(videoSurface instanceof CallbackVideoSurface ? new DeferredSnapshotSource((CallbackVideoSurface) videoSurface) : null);
+            if (videoSurface instanceof CallbackVideoSurface) {
+                ((CallbackVideoSurface) videoSurface).setVisibility(visibility);
+            }
         } else {
             // This is not necessarily an error
         }
@@ -87,8 +118,129 @@ public final class VideoSurfaceApi extends BaseApi {
         return videoSurface;
     }
 
+    /**
+     * Set the visibility of the video.
+     * <p>
+     * When the video is not visible, e.g. because the screen showing it is off-camera or occluded, the video track is
+     * deselected so the native library stops decoding video altogether, and a {@link CallbackVideoSurface} stops
+     * delivering frames. Audio and the playback clock keep running. The video stays deselected if a video track is
+     * selected while hidden, e.g. by playing new media.
+     * <p>
+     * When the video becomes visible again the previous video track is selected again, and by default the media is
+     * seeked to the current time so that decoding restarts from the nearest key frame rather than waiting for the next
+     * one, see {@link #setResyncOnVisible(boolean)}.
+     * <p>
+     * {@link Visibility#SUSPENDED} additionally frees the frame buffers of a {@link CallbackVideoSurface} as soon as
+     * no frame is held, they are allocated again when video is decoded again.
+     *
+     * @param visibility visibility, <code>null</code> is treated as {@link Visibility#VISIBLE}
+     */
+    public synchronized void setVisibility(Visibility visibility) {
+        if (visibility == null) {
+            visibility = Visibility.VISIBLE;
+        }
+        final Visibility previous = this.visibility;
+        if (visibility == previous) {
+            return;
+        }
+        this.visibility = visibility;
+        final CallbackVideoSurface callbackVideoSurface = videoSurface instanceof CallbackVideoSurface ? (CallbackVideoSurface) videoSurface : null;
+        if (visibility == Visibility.VISIBLE) {
+            show();
+            if (callbackVideoSurface != null) {
+                callbackVideoSurface.setVisibility(visibility);
+            }
+        } else {
+            if (callbackVideoSurface != null) {
+                callbackVideoSurface.setVisibility(visibility);
+            }
+            if (previous == Visibility.VISIBLE) {
+                hide();
+            }
+        }
+    }
+
+    /**
+     * Get the visibility of the video.
+     *
+     * @return visibility
+     */
+    public Visibility visibility() {
+        return visibility;
+    }
+
+    /**
+     * Set whether to seek to the current time when the video becomes visible again.
+     * <p>
+     * Without the seek the first frame after becoming visible is only decoded at the next key frame in the stream,
+     * which may be several seconds away. The seek is only made if the media is seekable.
+     *
+     * @param resyncOnVisible <code>true</code> to seek; <code>false</code> not to
+     */
+    public void setResyncOnVisible(boolean resyncOnVisible) {
+        this.resyncOnVisible = resyncOnVisible;
+    }
+
+    /**
+     * Test whether to seek to the current time when the video becomes visible again.
+     *
+     * @return <code>true</code> to seek; <code>false</code> not to
+     */
+    public boolean isResyncOnVisible() {
+        return resyncOnVisible;
+    }
+
+    private void hide() {
+        if (visibilityListener == null) {
+            visibilityListener = new VisibilityListener();
+            mediaPlayer.events().addMediaPlayerEventListener(visibilityListener);
+        }
+        deselectVideo();
+    }
+
+    private void show() {
+        final int track = hiddenTrack;
+        hiddenTrack = -1;
+        if (track != -1) {
+            mediaPlayer.video().setTrack(track);
+            if (resyncOnVisible && mediaPlayer.status().isSeekable()) {
+                mediaPlayer.controls().setTime(mediaPlayer.status().time());
+            }
+        }
+    }
+
+    private void deselectVideo() {
+        final int track = mediaPlayer.video().track();
+        if (track != -1) {
+            hiddenTrack = track;
+            mediaPlayer.video().setTrack(-1);
+        }
+    }
+
     @Override
-    protected void release() {
+    protected synchronized void release() {
+        if (visibilityListener != null) {
+            mediaPlayer.events().removeMediaPlayerEventListener(visibilityListener);
+            visibilityListener = null;
+        }
         this.videoSurface = null;
     }
+
+    /**
+     * Deselects any video track selected while the video is not visible.
+     */
+    private final class VisibilityListener extends MediaPlayerEventAdapter {
+
+        @Override
+        public void elementaryStreamSelected(MediaPlayer mediaPlayer, TrackType type, int id) {
+            if (type == TrackType.VIDEO && id != -1 && visibility != Visibility.VISIBLE) {
+                // Native calls must not be made on the native event callback thread
+                mediaPlayer.submit(() -> {
+                    if (visibility != Visibility.VISIBLE) {
+                        deselectVideo();
+                    }
+                });
+            }
+        }
+    }
 }
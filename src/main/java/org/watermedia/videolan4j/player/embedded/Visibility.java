@@ -0,0 +1,46 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded;
+
+/**
+ * Enumeration of the visibility states of an embedded media player's video.
+ *
+ * @see VideoSurfaceApi#setVisibility(Visibility)
+ */
+public enum Visibility {
+
+    /**
+     * Video is decoded and every frame is delivered.
+     */
+    VISIBLE,
+
+    /**
+     * Video is not decoded and no frames are delivered, the frame buffers are kept for a quick return to
+     * {@link #VISIBLE}. Audio and the playback clock are unaffected.
+     */
+    HIDDEN,
+
+    /**
+     * As {@link #HIDDEN}, and additionally the frame buffers are freed as soon as no frame is held, and are allocated
+     * again when video is next decoded, trading a slower return to {@link #VISIBLE} for memory.
+     */
+    SUSPENDED
+
+}
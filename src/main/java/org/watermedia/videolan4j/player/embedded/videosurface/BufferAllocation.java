@@ -0,0 +1,45 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+/**
+ * Enumeration of the ways native frame buffers can be allocated.
+ */
+public enum BufferAllocation {
+
+    /**
+     * Allocate via the default native buffer factory, aligned for the native library but not necessarily to a page.
+     */
+    DEFAULT,
+
+    /**
+     * Allocate whole pages directly from the operating system, so every buffer starts on a page boundary.
+     */
+    PAGE_ALIGNED,
+
+    /**
+     * As {@link #PAGE_ALIGNED}, and additionally ask the operating system to back the buffer with transparent huge
+     * pages where it supports them (currently Linux only), reducing TLB misses when reading and writing large frames.
+     * <p>
+     * Buffers too small to benefit are allocated exactly as for {@link #PAGE_ALIGNED}.
+     */
+    HUGE_PAGES
+
+}
@@ -26,28 +26,149 @@ import org.watermedia.videolan4j.BufferFormat;
 import org.watermedia.videolan4j.VideoLan4J;
 import org.watermedia.videolan4j.player.embedded.videosurface.callback.BufferCleanupCallback;
 import org.watermedia.videolan4j.player.embedded.videosurface.callback.BufferAllocatorCallback;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.ChromaConverter;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.ChromaLayout;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameDescriptor;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameView;
 import org.watermedia.videolan4j.player.embedded.videosurface.callback.RenderCallback;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.format.FormatNegotiator;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.format.VideoFormat;
 import org.watermedia.videolan4j.binding.lib.LibVlc;
+import org.watermedia.videolan4j.media.InfoApi;
+import org.watermedia.videolan4j.media.MediaStatistics;
 import org.watermedia.videolan4j.binding.internal.libvlc_display_callback_t;
 import org.watermedia.videolan4j.binding.internal.libvlc_lock_callback_t;
 import org.watermedia.videolan4j.binding.internal.libvlc_unlock_callback_t;
 import org.watermedia.videolan4j.binding.internal.libvlc_video_cleanup_cb;
 import org.watermedia.videolan4j.binding.internal.libvlc_video_format_cb;
 import org.watermedia.videolan4j.player.base.MediaPlayer;
+import org.watermedia.videolan4j.player.base.SnapshotSource;
+import org.watermedia.videolan4j.player.embedded.Visibility;
 
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of a video surface that uses native callbacks to receive video frame data for rendering.
  */
 public class CallbackVideoSurface extends VideoSurface implements libvlc_video_format_cb, libvlc_video_cleanup_cb, libvlc_lock_callback_t, libvlc_unlock_callback_t, libvlc_display_callback_t {
 
+    /**
+     * Default number of frame buffers, a single buffer shared by the decoder and the renderer.
+     */
+    public static final int DEFAULT_BUFFER_COUNT = 1;
+
+    /**
+     * Maximum number of frame buffers.
+     */
+    public static final int MAX_BUFFER_COUNT = 8;
+
+    /**
+     * Converter used to capture frames, on the calling thread since a single frame copy is small.
+     */
+    private static final ChromaConverter CAPTURE_CONVERTER = new ChromaConverter(null, 0);
+
     private final BufferAllocatorCallback bufferAllocatorCallback;
     private final BufferCleanupCallback cleanupCallback;
     private final RenderCallback renderCallback;
 
-    private final NativeBuffers nativeBuffers;
+    /**
+     * <code>true</code> if the native buffers should be locked in memory.
+     */
+    private final boolean lockBuffers;
+
+    /**
+     * Number of frame buffers in the ring.
+     */
+    private final int bufferCount;
+
+    /**
+     * Frame buffer ring for the currently negotiated format, or <code>null</code> if there is none.
+     */
+    private volatile FrameRing frameRing;
+
+    /**
+     * Format of the frame buffer ring while its buffers are freed by a suspend, or <code>null</code> if there is none -
+     * the ring is re-allocated from it the next time the native video output locks a buffer.
+     */
+    private FrameDescriptor suspendedFormat;
+
+    /**
+     * Guards replacing the frame buffer ring, when the format is negotiated, the surface is suspended or the ring is
+     * re-allocated.
+     */
+    private final Object ringLock = new Object();
+
+    /**
+     * Frame buffer ring the native video output most recently locked a buffer from.
+     */
+    private volatile FrameRing lockedRing;
+
+    /**
+     * Optional component used to decide the output format, or <code>null</code> to use the proposed format as-is.
+     */
+    private volatile FormatNegotiator formatNegotiator;
+
+    /**
+     * How frame buffers are allocated.
+     */
+    private volatile BufferAllocation bufferAllocation = BufferAllocation.DEFAULT;
+
+    /**
+     * Whether this surface takes precedence for the process-wide locked memory budget.
+     */
+    private volatile boolean highPriority;
+
+    /**
+     * Visibility of the video, frames are only delivered while visible.
+     */
+    private volatile Visibility visibility = Visibility.VISIBLE;
+
+    /**
+     * Frame-rate decimation for the render callback.
+     */
+    private final FrameDecimator frameDecimator = new FrameDecimator();
+
+    /**
+     * Fan-out of displayed frames to additional subscribers.
+     */
+    private final FrameHub frameHub = new FrameHub();
+
+    /**
+     * Frame timing and pacing accounting.
+     */
+    private final FramePacing pacing = new FramePacing();
+
+    /**
+     * Detection of frames unchanged from the previous frame delivered to the render callback.
+     */
+    private final DuplicateDetector duplicateDetector = new DuplicateDetector();
+
+    /**
+     * Source of in-memory snapshots of the displayed frames, created when first needed since it uses AWT imaging.
+     */
+    private volatile SnapshotSource snapshotSource;
+
+    /**
+     * Dispatcher used to render frames asynchronously, or <code>null</code> to render on the native display thread.
+     */
+    private volatile RenderDispatcher renderDispatcher;
+
+    /**
+     * Maximum age of an asynchronously rendered frame, in nanoseconds, or zero for no limit.
+     */
+    private volatile long maxFrameAge;
+
+    /**
+     * Picture identifiers handed to libvlc by the lock callback, one for each buffer slot and one for the scratch slot.
+     * <p>
+     * The identifier is simply the slot index plus one, since libvlc treats a <code>null</code> picture specially.
+     */
+    private final Pointer[] pictures;
 
     private MediaPlayer mediaPlayer;
 
@@ -62,17 +183,495 @@ public class CallbackVideoSurface extends VideoSurface implements libvlc_video_f
      * @param surfaceAdapter adapter to attach a video surface to a native media player
      */
     public CallbackVideoSurface(final BufferFormat bufferFormat, final BufferAllocatorCallback formatCallback, final RenderCallback renderCallback, final boolean lock, final VideoSurfaceAdapter surfaceAdapter, final BufferCleanupCallback cleanupCallback) {
+        this(bufferFormat, formatCallback, renderCallback, lock, surfaceAdapter, cleanupCallback, DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * Create a video surface with a ring of frame buffers.
+     * <p>
+     * With a single buffer the decoder writes into the same memory the render callback reads from. With two buffers
+     * (double-buffering) or more, the decoder always writes into a buffer other than the one most recently displayed,
+     * so a slow render callback never sees a partially written frame.
+     *
+     * @param formatCallback callback providing the video buffer format
+     * @param renderCallback callback used to render the video frame buffer
+     * @param lock <code>true</code> if the video buffer should be locked; <code>false</code> if not
+     * @param surfaceAdapter adapter to attach a video surface to a native media player
+     * @param bufferCount number of frame buffers in the ring, from 1 to {@link #MAX_BUFFER_COUNT}
+     */
+    public CallbackVideoSurface(final BufferFormat bufferFormat, final BufferAllocatorCallback formatCallback, final RenderCallback renderCallback, final boolean lock, final VideoSurfaceAdapter surfaceAdapter, final BufferCleanupCallback cleanupCallback, final int bufferCount) {
         super(surfaceAdapter);
+        if (bufferCount < 1 || bufferCount > MAX_BUFFER_COUNT) {
+            throw new IllegalArgumentException("bufferCount must be between 1 and " + MAX_BUFFER_COUNT);
+        }
         this.bufferFormat = bufferFormat;
         this.bufferAllocatorCallback = formatCallback;
         this.renderCallback = renderCallback;
-        this.nativeBuffers = new NativeBuffers(lock);
+        this.lockBuffers = lock;
+        this.bufferCount = bufferCount;
+        this.pictures = new Pointer[bufferCount + 1];
+        for (int i = 0; i < this.pictures.length; i++) {
+            this.pictures[i] = Pointer.createConstant(i + 1);
+        }
         this.cleanupCallback = cleanupCallback;
     }
 
+    /**
+     * Get the number of frame buffers in the ring.
+     *
+     * @return buffer count
+     */
+    public int bufferCount() {
+        return this.bufferCount;
+    }
+
+    /**
+     * Set the component used to decide the output video format.
+     * <p>
+     * The negotiator is consulted each time the native video output is (re-)configured, a change takes effect the next
+     * time the video format is negotiated.
+     *
+     * @param formatNegotiator format negotiator, or <code>null</code> to use the format proposed by the native library
+     */
+    public void setFormatNegotiator(final FormatNegotiator formatNegotiator) {
+        this.formatNegotiator = formatNegotiator;
+    }
+
+    /**
+     * Get the component used to decide the output video format.
+     *
+     * @return format negotiator, may be <code>null</code>
+     */
+    public FormatNegotiator formatNegotiator() {
+        return this.formatNegotiator;
+    }
+
+    /**
+     * Set how frame buffers are allocated.
+     * <p>
+     * A change takes effect the next time the video format is negotiated.
+     *
+     * @param bufferAllocation buffer allocation, <code>null</code> is treated as {@link BufferAllocation#DEFAULT}
+     */
+    public void setBufferAllocation(final BufferAllocation bufferAllocation) {
+        this.bufferAllocation = bufferAllocation != null ? bufferAllocation : BufferAllocation.DEFAULT;
+    }
+
+    /**
+     * Get how frame buffers are allocated.
+     *
+     * @return buffer allocation
+     */
+    public BufferAllocation bufferAllocation() {
+        return this.bufferAllocation;
+    }
+
+    /**
+     * Mark this surface as high priority for locking its buffers in memory.
+     * <p>
+     * Only relevant if buffers are locked. A high-priority surface may use the whole of the
+     * {@link NativeBufferPool#lockBudget() lock budget}, including the reserve, and may take locks away from
+     * normal-priority surfaces. A change takes effect the next time the video format is negotiated.
+     *
+     * @param highPriority <code>true</code> for high priority; <code>false</code> for normal priority
+     */
+    public void setHighPriority(final boolean highPriority) {
+        this.highPriority = highPriority;
+    }
+
+    /**
+     * Test whether this surface is high priority for locking its buffers in memory.
+     *
+     * @return <code>true</code> if high priority; <code>false</code> if not
+     */
+    public boolean isHighPriority() {
+        return this.highPriority;
+    }
+
+    /**
+     * Set a target frame rate for the render callback.
+     * <p>
+     * Frames arriving faster than the target rate are decimated - they still become the most recent frame available
+     * via {@link #acquireFrame()}, but the render callback is not invoked for them. This suits consumers that only
+     * refresh at a fixed rate, e.g. a 20 Hz tick, rendering a 50 or 60 fps source.
+     * <p>
+     * Decimation happens after the native library has written the frame, it does not save the copy into the frame
+     * buffer, only the render callback work.
+     *
+     * @param fps target frames per second, or zero to deliver every frame
+     */
+    public void setTargetFrameRate(final double fps) {
+        this.frameDecimator.frameRate(fps);
+    }
+
+    /**
+     * Get the target frame rate for the render callback.
+     *
+     * @return target frames per second, or zero if every frame is delivered
+     */
+    public double targetFrameRate() {
+        return this.frameDecimator.frameRate();
+    }
+
+    /**
+     * Get the number of frames delivered to the render callback.
+     *
+     * @return delivered frame count
+     */
+    public long deliveredFrames() {
+        return this.frameDecimator.delivered();
+    }
+
+    /**
+     * Get the number of frames not delivered to the render callback because of the target frame rate.
+     *
+     * @return decimated frame count
+     */
+    public long decimatedFrames() {
+        return this.frameDecimator.decimated();
+    }
+
+    /**
+     * Set an executor used to invoke the render callback asynchronously.
+     * <p>
+     * By default the render callback is invoked directly on the native video output thread, so a slow render callback
+     * delays decoding. With an executor set, the native display callback only publishes the frame and returns, and the
+     * render callback is invoked on the executor with the latest published frame - frames published while the render
+     * callback is still busy with an earlier frame are superseded, and never rendered.
+     * <p>
+     * The executor may be dedicated or shared, the render callback is never invoked concurrently for the same video
+     * surface. The caller owns the executor and is responsible for shutting it down.
+     * <p>
+     * Asynchronous rendering needs at least three frame buffers to be effective, see
+     * {@link #CallbackVideoSurface(BufferFormat, BufferAllocatorCallback, RenderCallback, boolean, VideoSurfaceAdapter, BufferCleanupCallback, int)}.
+     *
+     * @param executor executor, or <code>null</code> to render on the native video output thread
+     */
+    public void setRenderExecutor(final Executor executor) {
+        final RenderDispatcher previous = this.renderDispatcher;
+        if (previous != null && previous.executor() == executor) {
+            return;
+        }
+        final RenderDispatcher dispatcher;
+        if (executor != null) {
+            dispatcher = new RenderDispatcher(executor, this.renderCallback, this.pacing, this.duplicateDetector);
+            dispatcher.mediaPlayer(this.mediaPlayer);
+            dispatcher.maxAge(this.maxFrameAge);
+        } else {
+            dispatcher = null;
+        }
+        this.renderDispatcher = dispatcher;
+        if (previous != null) {
+            previous.discard();
+        }
+    }
+
+    /**
+     * Get the executor used to invoke the render callback asynchronously.
+     *
+     * @return executor, or <code>null</code> if the render callback is invoked on the native video output thread
+     */
+    public Executor renderExecutor() {
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        return dispatcher != null ? dispatcher.executor() : null;
+    }
+
+    /**
+     * Set the maximum age of a frame rendered asynchronously.
+     * <p>
+     * A frame that has waited longer than this by the time the render executor gets to it is discarded rather than
+     * rendered.
+     *
+     * @param maxFrameAge maximum age, milliseconds, or zero for no limit
+     */
+    public void setMaxFrameAge(final long maxFrameAge) {
+        this.maxFrameAge = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxFrameAge));
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        if (dispatcher != null) {
+            dispatcher.maxAge(this.maxFrameAge);
+        }
+    }
+
+    /**
+     * Get the maximum age of a frame rendered asynchronously.
+     *
+     * @return maximum age, milliseconds, or zero for no limit
+     */
+    public long maxFrameAge() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxFrameAge);
+    }
+
+    /**
+     * Get the number of asynchronously published frames that were superseded by a newer frame before the render
+     * executor got to them.
+     *
+     * @return superseded frame count
+     */
+    public long supersededFrames() {
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        return dispatcher != null ? dispatcher.superseded() : 0;
+    }
+
+    /**
+     * Get the number of asynchronously published frames discarded for exceeding the maximum frame age.
+     *
+     * @return stale frame count
+     */
+    public long staleFrames() {
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        return dispatcher != null ? dispatcher.stale() : 0;
+    }
+
+    /**
+     * Get the time the most recently rendered frame waited between being published and being rendered.
+     *
+     * @return render lag, nanoseconds, or zero if not rendering asynchronously
+     */
+    public long renderLag() {
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        return dispatcher != null ? dispatcher.lastLag() : 0;
+    }
+
+    /**
+     * Get the average time frames waited between being published and being rendered.
+     *
+     * @return average render lag, nanoseconds, or zero if not rendering asynchronously
+     */
+    public long averageRenderLag() {
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        return dispatcher != null ? dispatcher.averageLag() : 0;
+    }
+
+    /**
+     * Get the longest time a frame waited between being published and being rendered.
+     *
+     * @return maximum render lag, nanoseconds, or zero if not rendering asynchronously
+     */
+    public long maxRenderLag() {
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        return dispatcher != null ? dispatcher.maxLag() : 0;
+    }
+
+    /**
+     * Set the visibility of the video.
+     * <p>
+     * While not {@link Visibility#VISIBLE} no frames are delivered to the render callback, frame subscribers or
+     * {@link #acquireFrame()}.
+     * <p>
+     * Entering {@link Visibility#SUSPENDED} frees the frame buffers as soon as no consumer holds a frame and the native
+     * video output is not writing into them, and if the native video output is closed while suspended its buffers are
+     * freed rather than given back to the buffer pool. The buffers are allocated again the next time the native video
+     * output locks a buffer, so they stay freed for as long as the video is not decoded.
+     * <p>
+     * This only affects frame delivery, to also stop decoding use
+     * {@link org.watermedia.videolan4j.player.embedded.VideoSurfaceApi#setVisibility(Visibility)} which takes care of
+     * this surface as well.
+     *
+     * @param visibility visibility, <code>null</code> is treated as {@link Visibility#VISIBLE}
+     */
+    public void setVisibility(final Visibility visibility) {
+        this.visibility = visibility != null ? visibility : Visibility.VISIBLE;
+        if (this.visibility != Visibility.VISIBLE) {
+            final RenderDispatcher dispatcher = this.renderDispatcher;
+            if (dispatcher != null) {
+                dispatcher.discard();
+            }
+            if (this.visibility == Visibility.SUSPENDED) {
+                this.suspend();
+            }
+        } else {
+            this.pacing.restart();
+        }
+    }
+
+    /**
+     * Get the visibility of the video.
+     *
+     * @return visibility
+     */
+    public Visibility visibility() {
+        return this.visibility;
+    }
+
+    /**
+     * Set how frames identical to the previous frame delivered to the render callback are treated.
+     * <p>
+     * Slideshows, paused streams and static content keep producing identical frames, detecting them lets the consumer
+     * skip redundant work such as re-uploading a texture. Detection samples a sparse grid of rows, see
+     * {@link #setDuplicateSampleRows(int)}.
+     *
+     * @param mode duplicate frame mode, <code>null</code> is treated as {@link DuplicateFrameMode#OFF}
+     */
+    public void setDuplicateFrameMode(final DuplicateFrameMode mode) {
+        this.duplicateDetector.mode(mode);
+    }
+
+    /**
+     * Get how frames identical to the previous frame delivered to the render callback are treated.
+     *
+     * @return duplicate frame mode
+     */
+    public DuplicateFrameMode duplicateFrameMode() {
+        return this.duplicateDetector.mode();
+    }
+
+    /**
+     * Set the number of rows sampled in each plane to detect duplicate frames.
+     * <p>
+     * A change confined entirely to rows in between the sampled rows is not detected, more rows cost more time on the
+     * thread delivering frames.
+     *
+     * @param rows number of evenly spaced rows to sample, or zero to sample every row
+     */
+    public void setDuplicateSampleRows(final int rows) {
+        this.duplicateDetector.sampleRows(rows);
+    }
+
+    /**
+     * Get the number of rows sampled in each plane to detect duplicate frames.
+     *
+     * @return number of rows, or zero if every row is sampled
+     */
+    public int duplicateSampleRows() {
+        return this.duplicateDetector.sampleRows();
+    }
+
+    /**
+     * Get the number of frames detected as unchanged from the previous frame delivered, whether they were suppressed
+     * or only flagged.
+     *
+     * @return duplicate frame count
+     */
+    public long duplicateFrames() {
+        return this.duplicateDetector.duplicates();
+    }
+
+    /**
+     * Set the threshold after which a frame is counted as late.
+     * <p>
+     * A frame is late if the render callback finishes with it more than this long after the native library displayed
+     * it.
+     *
+     * @param lateThreshold threshold, in microseconds, or zero to use the mean interval between frames
+     */
+    public void setLateThreshold(final long lateThreshold) {
+        this.pacing.lateThreshold(lateThreshold);
+    }
+
+    /**
+     * Get the threshold after which a frame is counted as late.
+     *
+     * @return threshold, in microseconds, or zero if the mean interval between frames is used
+     */
+    public long lateThreshold() {
+        return this.pacing.lateThreshold();
+    }
+
+    /**
+     * Get a snapshot of the frame pacing metrics.
+     * <p>
+     * The snapshot includes the number of pictures lost by the native library, which is read from the current media
+     * statistics, so this method should not be invoked on the native video output thread.
+     *
+     * @return metrics
+     */
+    public FrameMetrics metrics() {
+        return this.pacing.snapshot(this.decimatedFrames(), this.supersededFrames(), this.staleFrames(), this.duplicateFrames(), this.lostPictures());
+    }
+
+    /**
+     * Reset the frame pacing counters and histograms.
+     */
+    public void resetMetrics() {
+        this.pacing.reset();
+    }
+
+    /**
+     * Get the hub used to deliver every displayed frame to additional subscribers.
+     * <p>
+     * Subscribers share the same native frame buffers as the render callback, so several consumers can be served by
+     * a single decode.
+     *
+     * @return frame hub
+     */
+    public FrameHub frameHub() {
+        return this.frameHub;
+    }
+
+    /**
+     * Get the source of in-memory snapshots of the displayed frames.
+     * <p>
+     * This is used by the media player the video surface is attached to, so that
+     * {@link org.watermedia.videolan4j.player.base.SnapshotApi#capture()} need not go via a file. It is created on
+     * first use, so a surface that never takes a snapshot never loads the AWT imaging classes.
+     *
+     * @return snapshot source
+     */
+    public SnapshotSource snapshotSource() {
+        SnapshotSource snapshotSource = this.snapshotSource;
+        if (snapshotSource == null) {
+            // Racing callers may each create one, which is harmless
+            snapshotSource = new FrameSnapshotSource(this);
+            this.snapshotSource = snapshotSource;
+        }
+        return snapshotSource;
+    }
+
+    /**
+     * Copy the most recently displayed video frame into a buffer, converting it to RGBA or BGRA.
+     * <p>
+     * The destination buffer is written using absolute positions, its position and limit are not changed.
+     *
+     * @param destination buffer to copy the frame into, at least the pitch multiplied by the frame height
+     * @param pitch pitch (row stride) of the destination, in bytes
+     * @param target target chroma layout, {@link ChromaLayout#RGBA} or {@link ChromaLayout#BGRA}
+     * @return description of the captured frame, or <code>null</code> if no frame is available
+     */
+    public FrameDescriptor capture(final ByteBuffer destination, final int pitch, final ChromaLayout target) {
+        final VideoFrame frame = this.acquireFrame();
+        if (frame == null) {
+            return null;
+        }
+        try {
+            CAPTURE_CONVERTER.convert(frame.view(), target, destination, pitch);
+            return frame.descriptor();
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Acquire the most recently displayed video frame.
+     * <p>
+     * This never blocks, and never blocks the decoder. The decoder will not write into the buffers of an acquired frame
+     * until it is released, provided the surface has more than one buffer.
+     * <p>
+     * Every successfully acquired frame <em>must</em> be released via {@link #releaseFrame(VideoFrame)}.
+     *
+     * @return video frame, or <code>null</code> if no frame is available
+     */
+    public VideoFrame acquireFrame() {
+        final FrameRing ring = this.frameRing;
+        return ring != null ? ring.acquire() : null;
+    }
+
+    /**
+     * Release a video frame previously acquired via {@link #acquireFrame()}.
+     *
+     * @param frame frame to release
+     */
+    public void releaseFrame(final VideoFrame frame) {
+        frame.release();
+    }
+
     @Override
     public void attach(final MediaPlayer mediaPlayer) {
         this.mediaPlayer = mediaPlayer;
+        this.pacing.clock(mediaPlayer.presentationClock());
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        if (dispatcher != null) {
+            dispatcher.mediaPlayer(mediaPlayer);
+        }
 
         LibVlc.libvlc_video_set_format_callbacks(mediaPlayer.mediaPlayerInstance(), this, this);
         LibVlc.libvlc_video_set_callbacks(mediaPlayer.mediaPlayerInstance(), this, this, this, null);
@@ -80,52 +679,254 @@ public class CallbackVideoSurface extends VideoSurface implements libvlc_video_f
 
 
     @Override
+    @SuppressWarnings("deprecation")
     public int format(final PointerByReference opaque, final PointerByReference chromaPointer, final IntByReference widthPointer, final IntByReference heightPointer, final PointerByReference pitchesPointer, final PointerByReference linesPointer) {
-        final int width = widthPointer.getValue();
-        final int height = heightPointer.getValue();
-        final byte[] chromaBytes = this.bufferFormat.getChroma().getBytes();
-        final int[] pitches = this.bufferFormat.getPitches(width, height);
-        final int[] lines = this.bufferFormat.getLines(width, height);
+        final String sourceChroma = new String(chromaPointer.getPointer().getByteArray(0, 4)).trim();
+        final VideoFormat proposal = new VideoFormat(sourceChroma, this.bufferFormat, widthPointer.getValue(), heightPointer.getValue());
+        final FormatNegotiator negotiator = this.formatNegotiator;
+        final VideoFormat videoFormat = negotiator != null ? negotiator.negotiate(proposal) : proposal;
 
-        // APPLY FORMAT - (IGNORE WIDTH AND HEIGHT)
+        final BufferFormat bufferFormat = videoFormat.bufferFormat();
+        final int width = videoFormat.width();
+        final int height = videoFormat.height();
+        final String chroma = bufferFormat.getChroma();
+        final byte[] chromaBytes = chroma.getBytes();
+        final int[] pitches = bufferFormat.getPitches(width, height);
+        final int[] lines = bufferFormat.getLines(width, height);
+
+        // APPLY FORMAT - a size different to the proposed size makes the native library scale the video
         chromaPointer.getPointer().write(0, chromaBytes, 0, Math.min(chromaBytes.length, 4));
+        widthPointer.setValue(width);
+        heightPointer.setValue(height);
         pitchesPointer.getPointer().write(0, pitches, 0, pitches.length);
         linesPointer.getPointer().write(0, lines, 0, lines.length);
 
-        final int result = this.nativeBuffers.allocate(pitches, lines);
-        this.bufferAllocatorCallback.allocatedBuffers(this.nativeBuffers.buffers());
-        return result;
+        this.pacing.sync();
+        this.duplicateDetector.reset();
+
+        final FrameDescriptor descriptor = new FrameDescriptor(bufferFormat, chroma, sourceChroma, width, height, pitches, lines);
+        synchronized (this.ringLock) {
+            if (this.visibility == Visibility.SUSPENDED) {
+                // Nothing is allocated until the native video output locks a buffer
+                this.suspendedFormat = descriptor;
+            } else {
+                this.frameRing = this.allocate(descriptor);
+            }
+        }
+        if (this.semaphore != null && this.bufferCount > 1) {
+            VideoLan4J.LOGGER.warn("The video surface semaphore is ignored with " + this.bufferCount + " frame buffers, use acquireFrame() to hold a frame instead");
+        }
+        // One native picture for each slot in the ring
+        return this.bufferCount;
+    }
+
+    /**
+     * Allocate a frame buffer ring.
+     *
+     * @param descriptor format of the frames held in the ring
+     * @return frame ring
+     */
+    private FrameRing allocate(final FrameDescriptor descriptor) {
+        final NativeBuffers nativeBuffers = new NativeBuffers(this.lockBuffers, this.bufferCount, this.bufferAllocation, this.highPriority);
+        nativeBuffers.allocate(descriptor.pitches(), descriptor.lines());
+        final FrameRing ring = new FrameRing(nativeBuffers, descriptor);
+        for (int slot = 0; slot < ring.slots(); slot++) {
+            this.bufferAllocatorCallback.allocatedBuffers(ring.buffers(slot));
+        }
+        return ring;
+    }
+
+    /**
+     * Retire a frame buffer ring that is no longer current.
+     *
+     * @param ring frame ring
+     * @param retain <code>true</code> to give the buffers back to the buffer pool; <code>false</code> to free them
+     */
+    private void retire(final FrameRing ring, final boolean retain) {
+        for (int slot = 0; slot < ring.slots(); slot++) {
+            this.cleanupCallback.cleanupBuffers(ring.buffers(slot));
+        }
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        if (dispatcher != null) {
+            dispatcher.discard();
+        }
+        // Buffers still held by a consumer, or being written by the decoder, are freed when the last of them is released
+        ring.retire(retain);
+    }
+
+    /**
+     * Free the frame buffers while the surface is suspended, keeping their format so the ring can be re-allocated the
+     * next time the native video output locks a buffer.
+     */
+    private void suspend() {
+        synchronized (this.ringLock) {
+            final FrameRing ring = this.frameRing;
+            if (ring != null) {
+                this.frameRing = null;
+                this.suspendedFormat = ring.descriptor();
+                this.retire(ring, false);
+            }
+        }
+    }
+
+    /**
+     * Get the frame buffer ring for the native video output to write into, re-allocating the ring freed by a suspend
+     * if need be.
+     *
+     * @return frame ring, or <code>null</code> if no format has been negotiated
+     */
+    private FrameRing writableRing() {
+        final FrameRing ring = this.frameRing;
+        if (ring != null) {
+            return ring;
+        }
+        synchronized (this.ringLock) {
+            if (this.frameRing == null && this.suspendedFormat != null) {
+                this.frameRing = this.allocate(this.suspendedFormat);
+                this.suspendedFormat = null;
+            }
+            return this.frameRing;
+        }
     }
 
     @Override
     public void cleanup(final Pointer opaque) {
-        this.cleanupCallback.cleanupBuffers(this.nativeBuffers.buffers());
-        this.nativeBuffers.free();
+        synchronized (this.ringLock) {
+            this.suspendedFormat = null;
+            this.lockedRing = null;
+            final FrameRing ring = this.frameRing;
+            if (ring != null) {
+                this.frameRing = null;
+                this.retire(ring, this.visibility != Visibility.SUSPENDED);
+            }
+        }
     }
 
     @Override
     public void display(final Pointer opaque, final Pointer picture) {
-        this.renderCallback.display(this.mediaPlayer, this.nativeBuffers.buffers(), this.bufferFormat);
+        final FrameRing ring = this.frameRing;
+        if (ring == null || ring != this.lockedRing || this.visibility != Visibility.VISIBLE) {
+            // A picture that is never displayed, or was written into a ring since freed, is recycled by the next lock
+            return;
+        }
+        int slot = this.slot(picture);
+        if (slot < 0) {
+            slot = ring.frontSlot();
+            if (slot < 0) {
+                return;
+            }
+        }
+        if (slot == ring.scratchSlot()) {
+            // Written into the scratch planes because consumers held every slot, the picture is dropped
+            return;
+        }
+        final long display = this.pacing.now();
+        ring.frame(slot).displayTime(display);
+        this.pacing.displayed(display);
+        final long sequence = ring.display(slot);
+        this.pacing.frame(sequence, display);
+        if (this.frameHub.hasSubscribers()) {
+            final VideoFrame frame = ring.acquire();
+            if (frame != null) {
+                this.frameHub.publish(this.mediaPlayer, frame);
+            }
+        }
+        final long now = System.nanoTime();
+        if (!this.frameDecimator.accept(now)) {
+            return;
+        }
+        final RenderDispatcher dispatcher = this.renderDispatcher;
+        if (dispatcher == null) {
+            final FrameView view = ring.view(slot);
+            final boolean unchanged = this.duplicateDetector.unchanged(view);
+            if (unchanged && this.duplicateDetector.mode() == DuplicateFrameMode.SUPPRESS) {
+                return;
+            }
+            this.renderCallback.display(this.mediaPlayer, view, sequence, unchanged);
+            this.pacing.consumed(display, this.pacing.now());
+            return;
+        }
+        final VideoFrame frame = ring.acquire();
+        if (frame != null) {
+            dispatcher.publish(frame, now);
+        }
     }
 
     @Override
+    @SuppressWarnings("deprecation")
     public Pointer lock(final Pointer opaque, final PointerByReference planes) {
-        final Pointer[] pointers = this.nativeBuffers.pointers();
-        // WATERMeDIA PATCH - START
-        try {
-            this.semaphore.acquire();
-            planes.getPointer().write(0, pointers, 0, pointers.length);
-            this.semaphore.release();
-        } catch (final InterruptedException e) {
-            this.semaphore.release();
-            throw new RuntimeException("Thread was interrupted", e);
+        final FrameRing ring = this.writableRing();
+        final Semaphore semaphore = this.semaphore;
+        if (semaphore != null && ring != null && ring.slots() == 1) {
+            // A single buffer is shared with the consumer, so wait for any consumer still holding the semaphore
+            try {
+                semaphore.acquire();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Thread was interrupted", e);
+            }
+            try {
+                return this.lockSlot(ring, planes);
+            } finally {
+                semaphore.release();
+            }
         }
+        return this.lockSlot(ring, planes);
+    }
 
-        // WATERMeDIA PATCH - END
-        return null;
+    private Pointer lockSlot(final FrameRing current, final PointerByReference planes) {
+        FrameRing ring = current;
+        int slot = ring.lock();
+        while (slot < 0) {
+            // Suspended since the ring was read, write into a re-allocated ring instead
+            ring = this.writableRing();
+            slot = ring.lock();
+        }
+        this.lockedRing = ring;
+        if (slot < ring.slots()) {
+            ring.frame(slot).lockTime(this.pacing.now());
+        }
+        // One primitive array write, the addresses are only computed when the format is negotiated
+        ring.writeAddresses(slot, planes.getPointer());
+        return this.pictures[slot];
     }
 
     @Override
     public void unlock(final Pointer opaque, final Pointer picture, final Pointer plane) {
+        // The ring the picture was locked from, even if it has been suspended since
+        final FrameRing ring = this.lockedRing;
+        final int slot = this.slot(picture);
+        if (ring != null && slot >= 0) {
+            if (slot < ring.slots()) {
+                ring.frame(slot).unlockTime(this.pacing.now());
+            }
+            ring.unlock(slot);
+        }
+    }
+
+    /**
+     * Get the number of pictures lost by the native library for the current media.
+     *
+     * @return picture count, or -1 if the media statistics are not available
+     */
+    private int lostPictures() {
+        final MediaPlayer mediaPlayer = this.mediaPlayer;
+        final InfoApi info = mediaPlayer != null ? mediaPlayer.media().info() : null;
+        final MediaStatistics statistics = info != null ? info.statistics() : null;
+        return statistics != null ? statistics.picturesLost() : -1;
+    }
+
+    /**
+     * Get the buffer slot for a native picture identifier previously returned from {@link #lock(Pointer, PointerByReference)}.
+     *
+     * @param picture picture identifier
+     * @return slot index, or -1 if the identifier is not valid
+     */
+    private int slot(final Pointer picture) {
+        if (picture == null) {
+            return -1;
+        }
+        final long slot = Pointer.nativeValue(picture) - 1;
+        return slot >= 0 && slot < this.pictures.length ? (int) slot : -1;
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameView;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Detects frames identical to the previous frame delivered to the render callback.
+ * <p>
+ * Each frame is reduced to a 64-bit fingerprint, hashing complete rows taken from a sparse grid of evenly spaced rows
+ * in every plane. This is orders of magnitude cheaper than comparing whole frames, and still catches any change that
+ * touches a sampled row - a change confined entirely to the rows in between is missed, so the number of sampled rows
+ * can be raised, up to every row, for content where small changes matter.
+ * <p>
+ * The fingerprint is compared with the previous frame actually delivered, not merely the previous frame displayed, so a
+ * frame that changed while intermediate frames were decimated or superseded is never reported as unchanged.
+ * <p>
+ * Checks are only made by the thread delivering frames to the render callback, which is never more than one thread at
+ * a time. The detector may be reset from any thread - a reset only raises a flag, and the checking thread forgets the
+ * previous frame itself when it next sees the flag.
+ */
+final class DuplicateDetector {
+
+    /**
+     * Default number of rows sampled in each plane.
+     */
+    static final int DEFAULT_SAMPLE_ROWS = 32;
+
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private volatile DuplicateFrameMode mode = DuplicateFrameMode.OFF;
+
+    /**
+     * Number of rows sampled in each plane, or zero for every row.
+     */
+    private volatile int sampleRows = DEFAULT_SAMPLE_ROWS;
+
+    /**
+     * Raised on each reset, so the next check does not compare with a frame from before the reset.
+     */
+    private final AtomicBoolean resetPending = new AtomicBoolean();
+
+    /**
+     * <code>true</code> if there is a previous fingerprint to compare with, only used by the checking thread.
+     */
+    private boolean checked;
+
+    private long fingerprint;
+
+    private volatile long duplicates;
+
+    void mode(DuplicateFrameMode mode) {
+        this.mode = mode != null ? mode : DuplicateFrameMode.OFF;
+        this.reset();
+    }
+
+    DuplicateFrameMode mode() {
+        return this.mode;
+    }
+
+    void sampleRows(int sampleRows) {
+        this.sampleRows = Math.max(0, sampleRows);
+        this.reset();
+    }
+
+    int sampleRows() {
+        return this.sampleRows;
+    }
+
+    /**
+     * Forget the previous frame, e.g. because the video format changed.
+     */
+    void reset() {
+        this.resetPending.set(true);
+    }
+
+    long duplicates() {
+        return this.duplicates;
+    }
+
+    /**
+     * Check whether a frame about to be delivered is unchanged from the previous frame delivered.
+     *
+     * @param frame frame
+     * @return <code>true</code> if the frame is unchanged; <code>false</code> if it changed, or detection is off
+     */
+    boolean unchanged(FrameView frame) {
+        if (this.resetPending.get() && this.resetPending.getAndSet(false)) {
+            this.checked = false;
+        }
+        if (this.mode == DuplicateFrameMode.OFF) {
+            return false;
+        }
+        final long fingerprint = this.fingerprint(frame);
+        final boolean unchanged = this.checked && this.fingerprint == fingerprint;
+        this.checked = true;
+        this.fingerprint = fingerprint;
+        if (unchanged) {
+            this.duplicates++;
+        }
+        return unchanged;
+    }
+
+    private long fingerprint(FrameView frame) {
+        final int sampleRows = this.sampleRows;
+        long hash = 0;
+        for (int plane = 0; plane < frame.planeCount(); plane++) {
+            final ByteBuffer buffer = frame.plane(plane);
+            final int pitch = frame.pitch(plane);
+            final int rowBytes = Math.min(pitch, frame.rowBytes(plane));
+            final int rows = frame.rows(plane);
+            final int samples = sampleRows > 0 ? Math.min(sampleRows, rows) : rows;
+            for (int i = 0; i < samples; i++) {
+                // Evenly spaced, always including the first and last rows
+                final int row = samples > 1 ? (int) ((long) i * (rows - 1) / (samples - 1)) : 0;
+                hash = hashRow(hash, buffer, row * pitch, rowBytes);
+            }
+        }
+        return hash;
+    }
+
+    private static long hashRow(long hash, ByteBuffer buffer, int offset, int length) {
+        final int end = offset + length;
+        int position = offset;
+        for (; position + 8 <= end; position += 8) {
+            hash = mix(hash, buffer.getLong(position));
+        }
+        for (; position < end; position++) {
+            hash = mix(hash, buffer.get(position));
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        return Long.rotateLeft((hash ^ value) * MULTIPLIER, 29);
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+/**
+ * Enumeration of the ways a {@link CallbackVideoSurface} can treat a frame identical to the previous frame delivered to
+ * the render callback.
+ */
+public enum DuplicateFrameMode {
+
+    /**
+     * Do not detect duplicate frames, every frame is delivered and reported as changed.
+     */
+    OFF,
+
+    /**
+     * Deliver every frame, reporting whether it is unchanged so the consumer can skip e.g. a texture upload.
+     */
+    FLAG,
+
+    /**
+     * Do not deliver unchanged frames to the render callback at all.
+     */
+    SUPPRESS
+
+}
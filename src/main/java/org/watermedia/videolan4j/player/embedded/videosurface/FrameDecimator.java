@@ -0,0 +1,97 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+/**
+ * Decides which displayed frames are delivered to the render callback when a target frame rate is set.
+ * <p>
+ * Frames are delivered on a fixed schedule at the target rate, frames arriving before the next scheduled delivery are
+ * decimated. A small tolerance absorbs jitter in the arrival times, so e.g. a 60 fps source decimated to 20 fps
+ * reliably delivers every third frame.
+ * <p>
+ * Only the display callback thread updates the state, the counters may be read from any thread.
+ */
+final class FrameDecimator {
+
+    /**
+     * Interval between delivered frames, in nanoseconds, or zero if decimation is disabled.
+     */
+    private volatile long interval;
+
+    /**
+     * Time the next frame is due, in nanoseconds.
+     */
+    private long deadline;
+
+    private volatile long delivered;
+
+    private volatile long decimated;
+
+    /**
+     * Set the target frame rate.
+     *
+     * @param fps target frames per second, or zero (or less) to deliver every frame
+     */
+    void frameRate(double fps) {
+        this.interval = fps > 0 ? (long) (1000000000L / fps) : 0;
+    }
+
+    /**
+     * Get the target frame rate.
+     *
+     * @return target frames per second, or zero if every frame is delivered
+     */
+    double frameRate() {
+        final long interval = this.interval;
+        return interval > 0 ? 1000000000.0 / interval : 0;
+    }
+
+    /**
+     * Decide whether a frame should be delivered.
+     *
+     * @param now current time, in nanoseconds
+     * @return <code>true</code> if the frame should be delivered; <code>false</code> if it should be decimated
+     */
+    boolean accept(long now) {
+        final long interval = this.interval;
+        if (interval > 0) {
+            if (now - this.deadline < -(interval >> 3)) {
+                this.decimated++;
+                return false;
+            }
+            this.deadline += interval;
+            // Re-synchronise after a stall, or the first frame, rather than delivering a burst of frames to catch up
+            if (now - this.deadline >= 0) {
+                this.deadline = now + interval;
+            }
+        }
+        this.delivered++;
+        return true;
+    }
+
+    long delivered() {
+        return this.delivered;
+    }
+
+    long decimated() {
+        return this.decimated;
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import org.watermedia.videolan4j.VideoLan4J;
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+
+import java.util.Arrays;
+
+/**
+ * Fan-out of the frames displayed by a {@link CallbackVideoSurface} to any number of subscribers.
+ * <p>
+ * Every subscriber receives its own reference-counted handle to the same native frame buffers, no frame data is
+ * copied. The buffer only becomes available to the decoder again once every subscriber has released its reference, so
+ * a frame can be uploaded to the GPU by one subscriber while another records or analyses it, all from a single decode.
+ * <p>
+ * Subscribers may be added and removed at any time, including while media is playing. Subscribers receive every
+ * displayed frame, regardless of any target frame rate set for the render callback.
+ * <p>
+ * The frame buffer ring should have enough buffers for the subscribers that hold on to frames, plus one for the
+ * decoder to write into.
+ */
+public final class FrameHub {
+
+    private static final FrameSubscriber[] NO_SUBSCRIBERS = new FrameSubscriber[0];
+
+    /**
+     * Current subscribers, replaced rather than modified so delivering a frame needs neither locking nor an iterator.
+     */
+    private volatile FrameSubscriber[] subscribers = NO_SUBSCRIBERS;
+
+    FrameHub() {
+    }
+
+    /**
+     * Add a subscriber.
+     *
+     * @param subscriber subscriber to add
+     */
+    public synchronized void subscribe(FrameSubscriber subscriber) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("Subscriber must not be null");
+        }
+        final FrameSubscriber[] subscribers = Arrays.copyOf(this.subscribers, this.subscribers.length + 1);
+        subscribers[subscribers.length - 1] = subscriber;
+        this.subscribers = subscribers;
+    }
+
+    /**
+     * Remove a subscriber.
+     * <p>
+     * The subscriber may still receive a frame that was being delivered at the time it was removed.
+     *
+     * @param subscriber subscriber to remove
+     */
+    public synchronized void unsubscribe(FrameSubscriber subscriber) {
+        final FrameSubscriber[] subscribers = this.subscribers;
+        for (int i = 0; i < subscribers.length; i++) {
+            if (subscribers[i] == subscriber) {
+                final FrameSubscriber[] remaining = new FrameSubscriber[subscribers.length - 1];
+                System.arraycopy(subscribers, 0, remaining, 0, i);
+                System.arraycopy(subscribers, i + 1, remaining, i, remaining.length - i);
+                this.subscribers = remaining.length > 0 ? remaining : NO_SUBSCRIBERS;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the number of subscribers.
+     *
+     * @return subscriber count
+     */
+    public int subscriberCount() {
+        return this.subscribers.length;
+    }
+
+    /**
+     * Check whether there are any subscribers.
+     *
+     * @return <code>true</code> if there is at least one subscriber; <code>false</code> if there are none
+     */
+    boolean hasSubscribers() {
+        return this.subscribers.length > 0;
+    }
+
+    /**
+     * Deliver a frame to every subscriber.
+     * <p>
+     * Ownership of the caller's reference to the frame passes to the hub, which gives it back once every subscriber has
+     * taken its own.
+     * <p>
+     * A subscriber owns its reference from the moment it is invoked, even if it then fails - the hub can not tell whether
+     * it had already released the frame, or handed it to another thread, so releasing on its behalf could give back a
+     * reference held by someone else.
+     *
+     * @param mediaPlayer media player
+     * @param frame frame to deliver
+     */
+    void publish(MediaPlayer mediaPlayer, VideoFrame frame) {
+        try {
+            for (final FrameSubscriber subscriber : this.subscribers) {
+                frame.retain();
+                try {
+                    subscriber.onFrame(mediaPlayer, frame);
+                } catch (Throwable t) {
+                    VideoLan4J.LOGGER.error("Frame subscriber failed", t);
+                }
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+}
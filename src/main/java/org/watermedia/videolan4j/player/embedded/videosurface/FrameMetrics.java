@@ -0,0 +1,225 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+/**
+ * Immutable snapshot of the frame pacing metrics of a {@link CallbackVideoSurface}.
+ * <p>
+ * All times are in microseconds. The pacing counters and histograms accumulate from when the surface was created, or
+ * from the last {@link CallbackVideoSurface#resetMetrics()}, the decimated, superseded, stale and duplicate frame
+ * counts always accumulate from when the surface was created.
+ * <p>
+ * Intervals are measured between consecutive frames displayed by the native library, including any pause in playback,
+ * so metrics should be reset when playback resumes if that matters.
+ */
+public final class FrameMetrics {
+
+    private final long displayedFrames;
+
+    private final long consumedFrames;
+
+    private final long lateFrames;
+
+    private final long decimatedFrames;
+
+    private final long supersededFrames;
+
+    private final long staleFrames;
+
+    private final long duplicateFrames;
+
+    private final int lostPictures;
+
+    private final long meanInterval;
+
+    private final long maxInterval;
+
+    private final long jitter;
+
+    private final TimingHistogram intervals;
+
+    private final TimingHistogram jitters;
+
+    private final TimingHistogram latencies;
+
+    FrameMetrics(long displayedFrames, long consumedFrames, long lateFrames, long decimatedFrames, long supersededFrames, long staleFrames, long duplicateFrames, int lostPictures, long meanInterval, long maxInterval, long jitter, TimingHistogram intervals, TimingHistogram jitters, TimingHistogram latencies) {
+        this.displayedFrames = displayedFrames;
+        this.consumedFrames = consumedFrames;
+        this.lateFrames = lateFrames;
+        this.decimatedFrames = decimatedFrames;
+        this.supersededFrames = supersededFrames;
+        this.staleFrames = staleFrames;
+        this.duplicateFrames = duplicateFrames;
+        this.lostPictures = lostPictures;
+        this.meanInterval = meanInterval;
+        this.maxInterval = maxInterval;
+        this.jitter = jitter;
+        this.intervals = intervals;
+        this.jitters = jitters;
+        this.latencies = latencies;
+    }
+
+    /**
+     * Get the number of frames displayed by the native library.
+     *
+     * @return frame count
+     */
+    public long displayedFrames() {
+        return this.displayedFrames;
+    }
+
+    /**
+     * Get the number of frames the render callback finished with.
+     *
+     * @return frame count
+     */
+    public long consumedFrames() {
+        return this.consumedFrames;
+    }
+
+    /**
+     * Get the number of frames the render callback finished with later than the late threshold after they were
+     * displayed.
+     *
+     * @return frame count
+     */
+    public long lateFrames() {
+        return this.lateFrames;
+    }
+
+    /**
+     * Get the number of frames not delivered to the render callback because of the target frame rate.
+     *
+     * @return frame count
+     */
+    public long decimatedFrames() {
+        return this.decimatedFrames;
+    }
+
+    /**
+     * Get the number of frames replaced by a newer frame before an asynchronous render callback got to them.
+     *
+     * @return frame count
+     */
+    public long supersededFrames() {
+        return this.supersededFrames;
+    }
+
+    /**
+     * Get the number of frames discarded for exceeding the maximum frame age before being rendered.
+     *
+     * @return frame count
+     */
+    public long staleFrames() {
+        return this.staleFrames;
+    }
+
+    /**
+     * Get the number of frames detected as unchanged from the previous frame delivered, whether they were suppressed or
+     * only flagged.
+     *
+     * @return frame count
+     */
+    public long duplicateFrames() {
+        return this.duplicateFrames;
+    }
+
+    /**
+     * Get the number of pictures lost by the native library, for the current media.
+     *
+     * @return picture count, or -1 if the media statistics are not available
+     */
+    public int lostPictures() {
+        return this.lostPictures;
+    }
+
+    /**
+     * Get the smoothed mean interval between displayed frames.
+     *
+     * @return interval, in microseconds
+     */
+    public long meanInterval() {
+        return this.meanInterval;
+    }
+
+    /**
+     * Get the longest interval between displayed frames.
+     *
+     * @return interval, in microseconds
+     */
+    public long maxInterval() {
+        return this.maxInterval;
+    }
+
+    /**
+     * Get the smoothed inter-frame jitter, the mean variation between consecutive intervals.
+     *
+     * @return jitter, in microseconds
+     */
+    public long jitter() {
+        return this.jitter;
+    }
+
+    /**
+     * Get the histogram of intervals between displayed frames.
+     *
+     * @return histogram
+     */
+    public TimingHistogram intervals() {
+        return this.intervals;
+    }
+
+    /**
+     * Get the histogram of variations between consecutive intervals.
+     *
+     * @return histogram
+     */
+    public TimingHistogram jitters() {
+        return this.jitters;
+    }
+
+    /**
+     * Get the histogram of the time from a frame being displayed to the render callback finishing with it.
+     *
+     * @return histogram
+     */
+    public TimingHistogram latencies() {
+        return this.latencies;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(200)
+            .append(getClass().getSimpleName()).append('[')
+            .append("displayedFrames=").append(this.displayedFrames).append(',')
+            .append("consumedFrames=").append(this.consumedFrames).append(',')
+            .append("lateFrames=").append(this.lateFrames).append(',')
+            .append("decimatedFrames=").append(this.decimatedFrames).append(',')
+            .append("supersededFrames=").append(this.supersededFrames).append(',')
+            .append("staleFrames=").append(this.staleFrames).append(',')
+            .append("duplicateFrames=").append(this.duplicateFrames).append(',')
+            .append("lostPictures=").append(this.lostPictures).append(',')
+            .append("meanInterval=").append(this.meanInterval).append(',')
+            .append("maxInterval=").append(this.maxInterval).append(',')
+            .append("jitter=").append(this.jitter).append(']')
+            .toString();
+    }
+
+}
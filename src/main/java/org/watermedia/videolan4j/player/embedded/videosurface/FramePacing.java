@@ -0,0 +1,221 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import org.watermedia.videolan4j.binding.lib.LibVlc;
+import org.watermedia.videolan4j.player.base.PresentationClock;
+
+import java.util.Arrays;
+
+/**
+ * Frame pacing accounting for a {@link CallbackVideoSurface}.
+ * <p>
+ * Frames are stamped on the native library clock, the same clock as {@link LibVlc#libvlc_clock()}, so the stamps can
+ * be compared with other native timings. Rather than calling into the native library several times for every frame,
+ * the offset between the native clock and {@link System#nanoTime()} is measured once, whenever the video format is
+ * negotiated, and applied to the Java clock.
+ * <p>
+ * Frames are recorded as displayed on the native display thread and as consumed on whichever thread runs the render
+ * callback, so the accounting is synchronized - it is never contended for more than a few instructions.
+ * <p>
+ * Frames the render callback has finished with are also recorded by the {@link PresentationClock} of the media player
+ * the video surface is attached to.
+ */
+final class FramePacing {
+
+    /**
+     * Weight of a new sample in the smoothed mean interval and jitter, as a right shift (one sixteenth).
+     */
+    private static final int SMOOTHING = 4;
+
+    private volatile long offset;
+
+    private volatile PresentationClock clock;
+
+    /**
+     * Fixed late threshold, in microseconds, or zero to use the mean interval.
+     */
+    private volatile long lateThreshold;
+
+    private long displayed;
+
+    private long consumed;
+
+    private long late;
+
+    private long lastDisplay = -1;
+
+    private long lastInterval = -1;
+
+    /**
+     * Smoothed mean interval, in microseconds scaled by 2^SMOOTHING.
+     */
+    private long meanInterval;
+
+    private long maxInterval;
+
+    /**
+     * Smoothed jitter, in microseconds scaled by 2^SMOOTHING.
+     */
+    private long jitter;
+
+    private final long[] intervals = new long[TimingHistogram.BUCKET_COUNT];
+
+    private final long[] jitters = new long[TimingHistogram.BUCKET_COUNT];
+
+    private final long[] latencies = new long[TimingHistogram.BUCKET_COUNT];
+
+    /**
+     * Measure the offset between the native clock and the Java clock.
+     */
+    void sync() {
+        this.offset = LibVlc.libvlc_clock() - System.nanoTime() / 1000;
+        final PresentationClock clock = this.clock;
+        if (clock != null) {
+            clock.sync();
+        }
+    }
+
+    void clock(PresentationClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Record a frame displayed by the native library with the presentation clock.
+     *
+     * @param sequence sequence number of the frame
+     * @param display time the frame was displayed, in microseconds
+     */
+    void frame(long sequence, long display) {
+        final PresentationClock clock = this.clock;
+        if (clock != null) {
+            clock.frame(sequence, display);
+        }
+    }
+
+    /**
+     * Get the current time on the native clock.
+     *
+     * @return time, in microseconds
+     */
+    long now() {
+        return System.nanoTime() / 1000 + this.offset;
+    }
+
+    void lateThreshold(long lateThreshold) {
+        this.lateThreshold = Math.max(0, lateThreshold);
+    }
+
+    long lateThreshold() {
+        return this.lateThreshold;
+    }
+
+    /**
+     * Record a frame displayed by the native library.
+     *
+     * @param display time the frame was displayed, in microseconds
+     */
+    synchronized void displayed(long display) {
+        this.displayed++;
+        if (this.lastDisplay >= 0) {
+            final long interval = display - this.lastDisplay;
+            this.intervals[TimingHistogram.bucket(interval)]++;
+            if (interval > this.maxInterval) {
+                this.maxInterval = interval;
+            }
+            if (this.lastInterval >= 0) {
+                final long variation = Math.abs(interval - this.lastInterval);
+                this.jitters[TimingHistogram.bucket(variation)]++;
+                this.jitter += variation - (this.jitter >> SMOOTHING);
+                this.meanInterval += interval - (this.meanInterval >> SMOOTHING);
+            } else {
+                this.meanInterval = interval << SMOOTHING;
+            }
+            this.lastInterval = interval;
+        }
+        this.lastDisplay = display;
+    }
+
+    /**
+     * Record a frame the render callback has finished with.
+     *
+     * @param display time the frame was displayed, in microseconds
+     * @param finished time the render callback finished, in microseconds
+     */
+    void consumed(long display, long finished) {
+        final PresentationClock clock = this.clock;
+        if (clock != null) {
+            clock.rendered(display, finished);
+        }
+        this.count(display, finished);
+    }
+
+    private synchronized void count(long display, long finished) {
+        this.consumed++;
+        final long latency = finished - display;
+        this.latencies[TimingHistogram.bucket(latency)]++;
+        final long threshold = this.lateThreshold > 0 ? this.lateThreshold : this.meanInterval >> SMOOTHING;
+        if (threshold > 0 && latency > threshold) {
+            this.late++;
+        }
+    }
+
+    /**
+     * Start measuring intervals afresh, so a deliberate gap in the frames is not counted as an interval.
+     */
+    synchronized void restart() {
+        this.lastDisplay = -1;
+        this.lastInterval = -1;
+    }
+
+    synchronized void reset() {
+        this.displayed = 0;
+        this.consumed = 0;
+        this.late = 0;
+        this.lastDisplay = -1;
+        this.lastInterval = -1;
+        this.meanInterval = 0;
+        this.maxInterval = 0;
+        this.jitter = 0;
+        Arrays.fill(this.intervals, 0);
+        Arrays.fill(this.jitters, 0);
+        Arrays.fill(this.latencies, 0);
+    }
+
+    synchronized FrameMetrics snapshot(long decimated, long superseded, long stale, long duplicates, int lostPictures) {
+        return new FrameMetrics(
+            this.displayed,
+            this.consumed,
+            this.late,
+            decimated,
+            superseded,
+            stale,
+            duplicates,
+            lostPictures,
+            this.meanInterval >> SMOOTHING,
+            this.maxInterval,
+            this.jitter >> SMOOTHING,
+            new TimingHistogram(this.intervals),
+            new TimingHistogram(this.jitters),
+            new TimingHistogram(this.latencies)
+        );
+    }
+
+}
@@ -0,0 +1,404 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import com.sun.jna.Pointer;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameDescriptor;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameView;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Book-keeping for the ring of frame buffers shared between the native video output and the consumers of the frames.
+ * <p>
+ * Every slot in the ring owns one complete set of plane buffers. The lock callback claims a free slot for the decoder
+ * to write into, the unlock callback marks that slot as complete, and the display callback promotes it to be the
+ * "front" slot - the newest completed picture. Depending on the native video output the unlock callback may arrive
+ * either before or after the display callback, both orderings are handled.
+ * <p>
+ * Consumers take a reference to the front slot with {@link #acquire()} and give it back with {@link #release(int)}. With
+ * two or more slots neither a referenced slot nor the front slot is ever handed out for writing, so a consumer never
+ * sees a partially written frame. If consumers hold every other slot the picture is written into scratch planes
+ * instead, allocated the first time they are needed, and is dropped rather than displayed. With a single slot the
+ * behaviour is the same as it always was, the decoder and the consumer share the one buffer.
+ * <p>
+ * The front slot and its sequence number are published together in a single atomic value, so a consumer always knows
+ * exactly which frame it holds.
+ * <p>
+ * A ring is created for each format negotiation. When the video output is cleaned up, or the surface is suspended, the
+ * ring is retired, and the native buffers are freed as soon as the last outstanding frame reference is released - the
+ * decoder holds a reference of its own from the lock callback to the unlock callback, so buffers are never freed while
+ * a picture is being written into them.
+ * <p>
+ * All methods are safe to call from any thread, none of them ever block.
+ */
+final class FrameRing {
+
+    /**
+     * Slot state for a slot that is free, or that holds a completed picture - any positive value is the number of
+     * consumer references to the slot.
+     */
+    static final int FREE = 0;
+
+    /**
+     * Slot state for a slot currently being written by the decoder.
+     */
+    static final int WRITING = -1;
+
+    /**
+     * Slot state for a slot that has been written but not yet displayed.
+     */
+    static final int READY = -2;
+
+    /**
+     * Number of bits of the published front value used for the slot index, the remaining bits hold the sequence.
+     */
+    private static final int SLOT_BITS = 8;
+
+    private static final long SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+    /**
+     * Native buffers owned by this ring.
+     */
+    private final NativeBuffers nativeBuffers;
+
+    /**
+     * Description of the frames held in this ring.
+     */
+    private final FrameDescriptor descriptor;
+
+    /**
+     * State of each slot.
+     */
+    private final AtomicIntegerArray states;
+
+    /**
+     * Reusable frame handle for each slot.
+     */
+    private final VideoFrame[] frames;
+
+    /**
+     * Published front slot and sequence number, or -1 if there is nothing to consume.
+     */
+    private final AtomicLong front = new AtomicLong(-1);
+
+    /**
+     * Total number of outstanding references across all slots, consumer references and the decoder reference held
+     * between {@link #lock()} and {@link #unlock(int)}.
+     */
+    private final AtomicInteger references = new AtomicInteger();
+
+    private final AtomicBoolean freed = new AtomicBoolean();
+
+    private volatile boolean retired;
+
+    /**
+     * <code>true</code> if the buffers should be given back to the buffer pool when freed; <code>false</code> if they
+     * should be freed outright.
+     */
+    private volatile boolean retain = true;
+
+    /**
+     * Sequence number of the most recently displayed frame, only ever written by the display callback thread.
+     */
+    private long sequence;
+
+    /**
+     * Create a frame ring.
+     *
+     * @param nativeBuffers allocated native buffers, one set of planes for each slot
+     * @param descriptor description of the frames held in the buffers
+     */
+    FrameRing(NativeBuffers nativeBuffers, FrameDescriptor descriptor) {
+        this.nativeBuffers = nativeBuffers;
+        this.descriptor = descriptor;
+        this.states = new AtomicIntegerArray(nativeBuffers.slots());
+        this.frames = new VideoFrame[nativeBuffers.slots()];
+        for (int i = 0; i < this.frames.length; i++) {
+            this.frames[i] = new VideoFrame(this, i, new FrameView(descriptor, nativeBuffers.buffers(i)));
+        }
+    }
+
+    /**
+     * Get the number of slots in the ring.
+     *
+     * @return slot count
+     */
+    int slots() {
+        return this.states.length();
+    }
+
+    /**
+     * Get the description of the frames held in this ring.
+     *
+     * @return frame descriptor
+     */
+    FrameDescriptor descriptor() {
+        return this.descriptor;
+    }
+
+    /**
+     * Get the plane buffers for a slot.
+     *
+     * @param slot slot index
+     * @return plane buffers
+     */
+    ByteBuffer[] buffers(int slot) {
+        return this.nativeBuffers.buffers(slot);
+    }
+
+    /**
+     * Get the read-only plane view for a slot.
+     *
+     * @param slot slot index
+     * @return frame view
+     */
+    FrameView view(int slot) {
+        return this.frames[slot].view();
+    }
+
+    /**
+     * Write the native plane addresses of a slot to a native plane pointer array.
+     *
+     * @param slot slot index
+     * @param planes native plane pointer array
+     */
+    void writeAddresses(int slot, Pointer planes) {
+        this.nativeBuffers.writeAddresses(slot, planes);
+    }
+
+    /**
+     * Get the frame handle for a slot.
+     *
+     * @param slot slot index
+     * @return frame handle
+     */
+    VideoFrame frame(int slot) {
+        return this.frames[slot];
+    }
+
+    /**
+     * Claim a slot for the decoder to write the next picture into.
+     * <p>
+     * A free slot is preferred, failing that a slot that was completed but never displayed (i.e. a dropped picture) is
+     * recycled. Failing that, with a single slot the front slot is shared with the consumers - consumers may go on
+     * holding it while the decoder writes the next picture into its buffers - and with more than one slot the
+     * {@link #scratchSlot() scratch slot} is returned, so that a frame held by a consumer is never overwritten.
+     * <p>
+     * Every successful lock takes a reference to the ring that is given back by {@link #unlock(int)}.
+     *
+     * @return index of the claimed slot, or -1 if the ring has been retired
+     */
+    int lock() {
+        this.references.incrementAndGet();
+        if (this.retired) {
+            // Retired while the caller was getting hold of the ring, the buffers may already be on their way out
+            this.unreference();
+            return -1;
+        }
+        int slot = this.claim(FREE);
+        if (slot < 0) {
+            slot = this.claim(READY);
+        }
+        if (slot < 0 && this.states.length() > 1) {
+            return this.nativeBuffers.scratch();
+        }
+        if (slot < 0) {
+            slot = this.frontSlot();
+        }
+        return slot < 0 ? 0 : slot;
+    }
+
+    /**
+     * Get the index of the scratch slot, which {@link #lock()} returns when every slot is held by a consumer.
+     * <p>
+     * The scratch slot has plane addresses but no frame handle or view, a picture written into it must not be
+     * displayed.
+     *
+     * @return slot index, one past the last slot
+     */
+    int scratchSlot() {
+        return this.states.length();
+    }
+
+    /**
+     * Claim the first slot, other than the front slot, in the given state.
+     *
+     * @param state required slot state
+     * @return index of the claimed slot, or -1 if none was available
+     */
+    private int claim(int state) {
+        for (int i = 0; i < this.states.length(); i++) {
+            if (i != this.frontSlot() && this.states.compareAndSet(i, state, WRITING)) {
+                // The slot may have been promoted to the front while it was being claimed
+                if (i != this.frontSlot()) {
+                    return i;
+                }
+                this.states.set(i, state);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Mark a slot as completely written, and give back the reference taken by {@link #lock()}.
+     *
+     * @param slot slot index
+     */
+    void unlock(int slot) {
+        if (slot < this.states.length()) {
+            this.states.compareAndSet(slot, WRITING, READY);
+        }
+        this.unreference();
+    }
+
+    /**
+     * Promote a slot to be the front slot.
+     * <p>
+     * The frame handle of the slot is stamped with the new sequence number only if no consumer holds it. A consumer
+     * holding a shared slot keeps the sequence number of the frame it acquired, even though the decoder has since
+     * written a newer picture into the buffers.
+     * <p>
+     * Must only be invoked from the display callback thread.
+     *
+     * @param slot slot index
+     * @return sequence number assigned to the frame
+     */
+    long display(int slot) {
+        final long sequence = ++this.sequence;
+        if (this.states.get(slot) < FREE) {
+            // Claimed by the lock, and not the front slot, so no consumer can be holding it
+            this.frames[slot].sequence(sequence);
+            this.states.set(slot, FREE);
+        } else if (this.states.compareAndSet(slot, FREE, WRITING)) {
+            // Shared but unreferenced, keep consumers out while it is stamped
+            this.frames[slot].sequence(sequence);
+            this.states.set(slot, FREE);
+        }
+        if (!this.retired) {
+            this.front.set(sequence << SLOT_BITS | slot);
+        }
+        return sequence;
+    }
+
+    /**
+     * Get the index of the front slot.
+     *
+     * @return slot index, or -1 if no picture has been displayed yet
+     */
+    int frontSlot() {
+        final long front = this.front.get();
+        return front < 0 ? -1 : (int) (front & SLOT_MASK);
+    }
+
+    /**
+     * Take a reference to the front slot.
+     * <p>
+     * This never blocks, if the front moves on while the reference is being taken the newer frame is acquired instead.
+     *
+     * @return frame handle, or <code>null</code> if no frame is available
+     */
+    VideoFrame acquire() {
+        for (;;) {
+            final long front = this.front.get();
+            if (front < 0) {
+                return null;
+            }
+            final int slot = (int) (front & SLOT_MASK);
+            final int state = this.states.get(slot);
+            if (state >= FREE) {
+                this.references.incrementAndGet();
+                if (this.states.compareAndSet(slot, state, state + 1)) {
+                    if (this.front.get() == front) {
+                        return this.frames[slot];
+                    }
+                    // The front moved on, give this one back and try for the newer frame
+                    this.release(slot);
+                } else {
+                    this.unreference();
+                }
+            }
+        }
+    }
+
+    /**
+     * Take an additional reference to a slot the caller already holds a reference to.
+     *
+     * @param slot slot index
+     */
+    void retain(int slot) {
+        this.references.incrementAndGet();
+        this.states.incrementAndGet(slot);
+    }
+
+    /**
+     * Give back a reference to a slot.
+     * <p>
+     * A slot is never released below its last reference - the negative slot states mean something else entirely, so
+     * releasing a frame more times than it was acquired must not hand the slot to the decoder while it is still held.
+     *
+     * @param slot slot index
+     * @throws IllegalStateException if the slot is not referenced
+     */
+    void release(int slot) {
+        for (;;) {
+            final int state = this.states.get(slot);
+            if (state < 1) {
+                throw new IllegalStateException("Frame released more times than it was acquired");
+            }
+            if (this.states.compareAndSet(slot, state, state - 1)) {
+                break;
+            }
+        }
+        this.unreference();
+    }
+
+    private void unreference() {
+        if (this.references.decrementAndGet() == 0 && this.retired) {
+            this.free();
+        }
+    }
+
+    /**
+     * Retire the ring, no further frames can be acquired and the native buffers are freed as soon as there are no
+     * outstanding references.
+     *
+     * @param retain <code>true</code> to give the buffers back to the buffer pool; <code>false</code> to free them
+     */
+    void retire(boolean retain) {
+        this.retain = retain;
+        this.retired = true;
+        this.front.set(-1);
+        if (this.references.get() == 0) {
+            this.free();
+        }
+    }
+
+    private void free() {
+        if (this.freed.compareAndSet(false, true)) {
+            this.nativeBuffers.free(this.retain);
+        }
+    }
+
+}
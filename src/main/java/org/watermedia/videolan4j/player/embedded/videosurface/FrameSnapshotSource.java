@@ -0,0 +1,104 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import org.watermedia.videolan4j.player.base.SnapshotSource;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.ChromaConverter;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.ChromaLayout;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameView;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Snapshot source that copies the most recently displayed frame of a {@link CallbackVideoSurface} into an image.
+ * <p>
+ * Packed 32-bit frames are sampled directly from native memory into the image raster, any other supported chroma is
+ * first converted to BGRA. Scaling uses nearest-neighbour sampling, which is plenty for thumbnails and previews.
+ */
+final class FrameSnapshotSource implements SnapshotSource {
+
+    private final CallbackVideoSurface videoSurface;
+
+    private final ChromaConverter chromaConverter = new ChromaConverter(null, 0);
+
+    FrameSnapshotSource(CallbackVideoSurface videoSurface) {
+        this.videoSurface = videoSurface;
+    }
+
+    @Override
+    public BufferedImage capture(int width, int height) {
+        final VideoFrame frame = this.videoSurface.acquireFrame();
+        if (frame == null) {
+            return null;
+        }
+        try {
+            return this.capture(frame.view(), width, height);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private BufferedImage capture(FrameView view, int width, int height) {
+        final int sourceWidth = view.width();
+        final int sourceHeight = view.height();
+        if (width <= 0 && height <= 0) {
+            width = sourceWidth;
+            height = sourceHeight;
+        } else if (width <= 0) {
+            width = Math.max(1, (int) ((long) sourceWidth * height / sourceHeight));
+        } else if (height <= 0) {
+            height = Math.max(1, (int) ((long) sourceHeight * width / sourceWidth));
+        }
+
+        final ChromaLayout layout = view.descriptor().layout();
+        final ByteBuffer pixels;
+        final int pitch;
+        final boolean rgba;
+        if (layout == ChromaLayout.RV32 || layout == ChromaLayout.BGRA || layout == ChromaLayout.RGBA) {
+            pixels = view.plane(0).duplicate();
+            pitch = view.pitch(0);
+            rgba = layout == ChromaLayout.RGBA;
+        } else if (layout != null && ChromaConverter.isSupported(layout, ChromaLayout.BGRA)) {
+            pitch = sourceWidth * 4;
+            pixels = ByteBuffer.allocate(pitch * sourceHeight);
+            this.chromaConverter.convert(view, ChromaLayout.BGRA, pixels, pitch);
+            rgba = false;
+        } else {
+            return null;
+        }
+        // Little-endian 32-bit BGRA is exactly the integer ARGB layout of the image
+        pixels.order(ByteOrder.LITTLE_ENDIAN);
+
+        final BufferedImage image = new BufferedImage(width, height, layout == ChromaLayout.RV32 ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        final int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0, i = 0; y < height; y++) {
+            final int row = (int) ((long) y * sourceHeight / height) * pitch;
+            for (int x = 0; x < width; x++, i++) {
+                final int pixel = pixels.getInt(row + ((int) ((long) x * sourceWidth / width) << 2));
+                data[i] = rgba ? (pixel & 0xff00ff00) | (pixel & 0xff) << 16 | (pixel >> 16) & 0xff : pixel;
+            }
+        }
+        return image;
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+
+/**
+ * Specification for a component that wishes to receive every video frame from a {@link FrameHub}.
+ * <p>
+ * The subscriber is invoked by a <em>native</em> thread.
+ */
+public interface FrameSubscriber {
+
+    /**
+     * Call-back when a new video frame has been displayed.
+     * <p>
+     * The subscriber receives its own reference to the frame, and <em>must</em> give it back with
+     * {@link VideoFrame#release()} once finished with it. The frame may be handed to another thread, and released
+     * there, but implementations of this method must themselves execute as quickly as possible.
+     * <p>
+     * The reference belongs to the subscriber even if this method throws an exception, so an implementation that does
+     * not hand the frame on should release it in a <code>finally</code> block.
+     *
+     * @param mediaPlayer media player to which the event relates
+     * @param frame video frame
+     */
+    void onFrame(MediaPlayer mediaPlayer, VideoFrame frame);
+
+}
@@ -0,0 +1,623 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import org.watermedia.videolan4j.ByteBufferFactory;
+import org.watermedia.videolan4j.VideoLan4J;
+import org.watermedia.videolan4j.binding.lib.Kernel32;
+import org.watermedia.videolan4j.binding.lib.LibC;
+import org.watermedia.videolan4j.binding.lib.size_t;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Process-wide pool of native frame buffers.
+ * <p>
+ * Every format negotiation on a {@link CallbackVideoSurface} needs a set of multi-megabyte direct buffers, and every
+ * media change, playlist advance or adaptive resolution switch throws them away again. Rather than freeing and
+ * re-allocating (and, when buffers are locked, unlocking and re-locking) the memory each time, released buffers are
+ * kept here and handed out again to the next surface that needs a buffer of the same size class.
+ * <p>
+ * Requested sizes are rounded up to a size class, at most a quarter larger than the request, so that buffers for
+ * slightly different resolutions can still be shared. A borrowed buffer always has its limit set to the requested size.
+ * <p>
+ * The pool retains at most {@link #capacity()} bytes, and buffers left unused for longer than {@link #idleTimeout()}
+ * are freed the next time the pool is used or {@link #trim()} is invoked.
+ * <p>
+ * Buffers that were locked in memory stay locked while they are retained by the pool, so a buffer borrowed with
+ * locking requested and returned with locking still in place costs no system calls at all.
+ * <p>
+ * Buffers are pooled separately for each {@link BufferAllocation}, a page-aligned buffer is only ever handed out for a
+ * page-aligned request and vice versa.
+ * <p>
+ * Locking is accounted against a process-wide budget, see {@link #setLockBudget(long)}. Buffers borrowed for a
+ * high-priority surface may use the whole budget, buffers for any other surface are limited to the budget less the
+ * {@link #priorityReserve()}. When a high-priority request would exceed the budget, locks are first released from
+ * retained buffers and then from buffers in use by normal-priority surfaces. A buffer that cannot be locked, because
+ * the budget is exhausted or the operating system refused, is simply used unlocked.
+ */
+public final class NativeBufferPool {
+
+    /**
+     * Default maximum number of bytes retained by the pool.
+     */
+    public static final long DEFAULT_CAPACITY = 256L * 1024 * 1024;
+
+    /**
+     * Default time after which an unused buffer is freed, in milliseconds.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    /**
+     * Default maximum number of bytes locked in memory, effectively unlimited.
+     */
+    public static final long DEFAULT_LOCK_BUDGET = Long.MAX_VALUE;
+
+    /**
+     * Size classes below this size are rounded to a multiple of the page size.
+     */
+    private static final int PAGE_SIZE = 4096;
+
+    private static final NativeBufferPool INSTANCE = new NativeBufferPool();
+
+    /**
+     * Retained buffers, by allocation and size class.
+     */
+    private final Map<BufferAllocation, TreeMap<Integer, ArrayDeque<Entry>>> retained = new EnumMap<>(BufferAllocation.class);
+
+    /**
+     * Buffers, borrowed or retained, that were allocated directly from the operating system rather than by the
+     * default buffer factory.
+     */
+    private final Map<ByteBuffer, PageAllocator.Mapping> mappings = new IdentityHashMap<>();
+
+    /**
+     * Buffers, borrowed or retained, that are currently locked in memory.
+     */
+    private final Set<ByteBuffer> locked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Locked buffers currently in use by normal-priority surfaces, whose locks may be given up for a high-priority
+     * surface.
+     */
+    private final Set<ByteBuffer> demotable = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private boolean enabled = true;
+
+    private long capacity = DEFAULT_CAPACITY;
+
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    private long retainedBytes;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private long lockBudget = DEFAULT_LOCK_BUDGET;
+
+    private long priorityReserve;
+
+    private long lockedBytes;
+
+    private long lockRefusals;
+
+    private long lockFailures;
+
+    private long lockDemotions;
+
+    private NativeBufferPool() {
+    }
+
+    /**
+     * Get the process-wide buffer pool.
+     *
+     * @return buffer pool
+     */
+    public static NativeBufferPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the size class for a requested buffer size.
+     *
+     * @param size requested size, in bytes
+     * @return size class, in bytes
+     */
+    static int sizeClass(int size) {
+        if (size <= 16 * PAGE_SIZE) {
+            return (size + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+        }
+        final int step = Integer.highestOneBit(size) >> 2;
+        return (size + step - 1) / step * step;
+    }
+
+    /**
+     * Borrow a buffer from the pool, allocating a new one if there is no suitable retained buffer.
+     *
+     * @param size required size, in bytes
+     * @param lock <code>true</code> if the buffer should be locked in memory; <code>false</code> if not
+     * @param priority <code>true</code> if the buffer is for a high-priority surface; <code>false</code> if not
+     * @param allocation how the buffer should be allocated
+     * @return buffer, with its limit set to the required size
+     */
+    synchronized ByteBuffer borrow(int size, boolean lock, boolean priority, BufferAllocation allocation) {
+        this.evictIdle(now());
+        final int sizeClass = sizeClass(size);
+        ByteBuffer buffer = null;
+        final TreeMap<Integer, ArrayDeque<Entry>> classes = this.retained.get(allocation);
+        final ArrayDeque<Entry> entries = classes != null ? classes.get(sizeClass) : null;
+        if (entries != null && !entries.isEmpty()) {
+            buffer = entries.pollLast().buffer;
+            this.retainedBytes -= buffer.capacity();
+            this.hits++;
+        } else {
+            buffer = this.allocate(this.enabled ? sizeClass : size, allocation);
+            this.misses++;
+        }
+        if (lock) {
+            this.lock(buffer, priority);
+        } else {
+            this.unlock(buffer);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Give a buffer back to the pool.
+     * <p>
+     * The buffer is retained for re-use if the pool is enabled and has room for it, otherwise it is freed.
+     *
+     * @param buffer buffer previously obtained from {@link #borrow(int, boolean, boolean, BufferAllocation)}
+     */
+    synchronized void giveBack(ByteBuffer buffer) {
+        // A retained buffer belongs to no surface, its lock is the first to go for a high-priority surface
+        this.demotable.remove(buffer);
+        final long now = now();
+        this.evictIdle(now);
+        final int sizeClass = buffer.capacity();
+        if (this.enabled && sizeClass == sizeClass(sizeClass) && this.retainedBytes + sizeClass <= this.capacity) {
+            final PageAllocator.Mapping mapping = this.mappings.get(buffer);
+            final BufferAllocation allocation = mapping != null ? mapping.allocation : BufferAllocation.DEFAULT;
+            this.retained.computeIfAbsent(allocation, k -> new TreeMap<>()).computeIfAbsent(sizeClass, k -> new ArrayDeque<>()).addLast(new Entry(buffer, now));
+            this.retainedBytes += sizeClass;
+        } else {
+            this.free(buffer);
+        }
+    }
+
+    /**
+     * Free a buffer immediately, without retaining it for re-use.
+     *
+     * @param buffer buffer previously obtained from {@link #borrow(int, boolean, boolean, BufferAllocation)}
+     */
+    synchronized void release(ByteBuffer buffer) {
+        this.free(buffer);
+    }
+
+    /**
+     * Free every retained buffer that has been unused for longer than the idle timeout.
+     */
+    public synchronized void trim() {
+        this.evictIdle(now());
+    }
+
+    /**
+     * Free every retained buffer.
+     */
+    public synchronized void clear() {
+        this.evict(Long.MAX_VALUE);
+    }
+
+    /**
+     * Enable or disable pooling.
+     * <p>
+     * Disabling the pool frees every retained buffer, subsequent buffers are allocated and freed directly.
+     *
+     * @param enabled <code>true</code> to enable pooling; <code>false</code> to disable it
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            this.clear();
+        }
+    }
+
+    /**
+     * Test whether pooling is enabled.
+     *
+     * @return <code>true</code> if pooling is enabled; <code>false</code> if not
+     */
+    public synchronized boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Set the maximum number of bytes retained by the pool.
+     *
+     * @param capacity capacity, in bytes
+     */
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        while (this.retainedBytes > capacity) {
+            this.evictOldest();
+        }
+    }
+
+    /**
+     * Get the maximum number of bytes retained by the pool.
+     *
+     * @return capacity, in bytes
+     */
+    public synchronized long capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Set the time after which an unused buffer is freed.
+     *
+     * @param idleTimeout timeout, in milliseconds
+     */
+    public synchronized void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Get the time after which an unused buffer is freed.
+     *
+     * @return timeout, in milliseconds
+     */
+    public synchronized long idleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * Set the maximum number of bytes locked in memory, across every surface in the process.
+     * <p>
+     * Lowering the budget does not unlock buffers that are already locked, it only affects subsequent requests.
+     *
+     * @param lockBudget budget, in bytes
+     */
+    public synchronized void setLockBudget(long lockBudget) {
+        this.lockBudget = lockBudget;
+    }
+
+    /**
+     * Get the maximum number of bytes locked in memory.
+     *
+     * @return budget, in bytes
+     */
+    public synchronized long lockBudget() {
+        return this.lockBudget;
+    }
+
+    /**
+     * Set the part of the lock budget reserved for high-priority surfaces.
+     *
+     * @param priorityReserve reserve, in bytes
+     */
+    public synchronized void setPriorityReserve(long priorityReserve) {
+        this.priorityReserve = priorityReserve;
+    }
+
+    /**
+     * Get the part of the lock budget reserved for high-priority surfaces.
+     *
+     * @return reserve, in bytes
+     */
+    public synchronized long priorityReserve() {
+        return this.priorityReserve;
+    }
+
+    /**
+     * Get the number of bytes currently locked in memory, including retained buffers.
+     *
+     * @return locked size, in bytes
+     */
+    public synchronized long lockedBytes() {
+        return this.lockedBytes;
+    }
+
+    /**
+     * Get the number of lock requests refused because they would have exceeded the lock budget.
+     *
+     * @return refusal count
+     */
+    public synchronized long lockRefusals() {
+        return this.lockRefusals;
+    }
+
+    /**
+     * Get the number of lock requests that failed in the operating system, for example because the process resource
+     * limit for locked memory was reached.
+     *
+     * @return failure count
+     */
+    public synchronized long lockFailures() {
+        return this.lockFailures;
+    }
+
+    /**
+     * Get the number of buffers unlocked to make room in the lock budget for a high-priority surface.
+     *
+     * @return demotion count
+     */
+    public synchronized long lockDemotions() {
+        return this.lockDemotions;
+    }
+
+    /**
+     * Get the number of buffer requests satisfied by a retained buffer.
+     *
+     * @return hit count
+     */
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of buffer requests that required a new allocation.
+     *
+     * @return miss count
+     */
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the number of retained buffers that have been freed because they were idle or the pool was full.
+     *
+     * @return eviction count
+     */
+    public synchronized long evictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Get the number of bytes currently retained by the pool.
+     *
+     * @return retained size, in bytes
+     */
+    public synchronized long retainedBytes() {
+        return this.retainedBytes;
+    }
+
+    /**
+     * Get the current time for idle tracking.
+     *
+     * @return monotonic time, in milliseconds
+     */
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    private void evictIdle(long now) {
+        this.evict(now - this.idleTimeout);
+    }
+
+    /**
+     * Free every retained buffer returned to the pool before a particular time.
+     *
+     * @param before time, in milliseconds
+     */
+    private void evict(long before) {
+        for (final TreeMap<Integer, ArrayDeque<Entry>> classes : this.retained.values()) {
+            final Iterator<ArrayDeque<Entry>> it = classes.values().iterator();
+            while (it.hasNext()) {
+                final ArrayDeque<Entry> entries = it.next();
+                // Entries are in the order they were returned, oldest first
+                while (!entries.isEmpty() && entries.peekFirst().returned < before) {
+                    this.evict(entries.pollFirst());
+                }
+                if (entries.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void evictOldest() {
+        TreeMap<Integer, ArrayDeque<Entry>> oldestClasses = null;
+        Map.Entry<Integer, ArrayDeque<Entry>> oldest = null;
+        for (final TreeMap<Integer, ArrayDeque<Entry>> classes : this.retained.values()) {
+            for (final Map.Entry<Integer, ArrayDeque<Entry>> entries : classes.entrySet()) {
+                if (oldest == null || entries.getValue().peekFirst().returned < oldest.getValue().peekFirst().returned) {
+                    oldestClasses = classes;
+                    oldest = entries;
+                }
+            }
+        }
+        if (oldest != null) {
+            this.evict(oldest.getValue().pollFirst());
+            if (oldest.getValue().isEmpty()) {
+                oldestClasses.remove(oldest.getKey());
+            }
+        }
+    }
+
+    private void evict(Entry entry) {
+        this.retainedBytes -= entry.buffer.capacity();
+        this.evictions++;
+        this.free(entry.buffer);
+    }
+
+    /**
+     * Allocate a new buffer.
+     * <p>
+     * If a page-aligned allocation fails the buffer is allocated by the default buffer factory instead.
+     *
+     * @param size buffer size, in bytes
+     * @param allocation how the buffer should be allocated
+     * @return buffer
+     */
+    private ByteBuffer allocate(int size, BufferAllocation allocation) {
+        if (allocation != BufferAllocation.DEFAULT) {
+            final PageAllocator.Mapping mapping = PageAllocator.allocate(size, allocation);
+            if (mapping != null) {
+                this.mappings.put(mapping.buffer, mapping);
+                return mapping.buffer;
+            }
+        }
+        return ByteBufferFactory.alloc(size);
+    }
+
+    private void free(ByteBuffer buffer) {
+        this.unlock(buffer);
+        final PageAllocator.Mapping mapping = this.mappings.remove(buffer);
+        if (mapping != null) {
+            PageAllocator.free(mapping);
+        } else {
+            ByteBufferFactory.dealloc(buffer);
+        }
+    }
+
+    /**
+     * Lock a buffer in memory, if the lock budget allows it.
+     *
+     * @param buffer buffer
+     * @param priority <code>true</code> if the buffer is for a high-priority surface; <code>false</code> if not
+     */
+    private void lock(ByteBuffer buffer, boolean priority) {
+        if (this.locked.contains(buffer)) {
+            if (priority) {
+                this.demotable.remove(buffer);
+            } else {
+                this.demotable.add(buffer);
+            }
+            return;
+        }
+        final long size = buffer.capacity();
+        final long limit = priority ? this.lockBudget : this.lockBudget - this.priorityReserve;
+        if (priority && this.lockedBytes + size > limit) {
+            this.reclaim(this.lockedBytes + size - limit);
+        }
+        if (this.lockedBytes + size > limit) {
+            this.lockRefusals++;
+            return;
+        }
+        final Pointer pointer = Pointer.createConstant(ByteBufferFactory.address(buffer));
+        final boolean success;
+        if (!Platform.isWindows()) {
+            success = LibC.INSTANCE.mlock(pointer, new NativeLong(size)) == 0;
+        } else {
+            success = Kernel32.INSTANCE.VirtualLock(pointer, new size_t(size));
+        }
+        if (!success) {
+            if (this.lockFailures++ == 0) {
+                VideoLan4J.LOGGER.warn("Failed to lock a frame buffer in memory, the locked memory limit may have been reached - buffers that can not be locked are used unlocked");
+            }
+            return;
+        }
+        this.locked.add(buffer);
+        this.lockedBytes += size;
+        if (!priority) {
+            this.demotable.add(buffer);
+        }
+    }
+
+    /**
+     * Release locks to make room in the lock budget, first from retained buffers and then from buffers in use by
+     * normal-priority surfaces.
+     *
+     * @param required number of bytes required
+     */
+    private void reclaim(long required) {
+        long reclaimed = 0;
+        for (final TreeMap<Integer, ArrayDeque<Entry>> classes : this.retained.values()) {
+            for (final ArrayDeque<Entry> entries : classes.values()) {
+                for (final Entry entry : entries) {
+                    if (reclaimed >= required) {
+                        return;
+                    }
+                    reclaimed += this.demote(entry.buffer);
+                }
+            }
+        }
+        final Iterator<ByteBuffer> it = this.demotable.iterator();
+        while (reclaimed < required && it.hasNext()) {
+            final ByteBuffer buffer = it.next();
+            it.remove();
+            reclaimed += this.demote(buffer);
+        }
+    }
+
+    private long demote(ByteBuffer buffer) {
+        if (this.unlock(buffer)) {
+            this.lockDemotions++;
+            return buffer.capacity();
+        }
+        return 0;
+    }
+
+    /**
+     * Unlock a buffer, if it is locked.
+     *
+     * @param buffer buffer
+     * @return <code>true</code> if the buffer was locked; <code>false</code> if not
+     */
+    private boolean unlock(ByteBuffer buffer) {
+        this.demotable.remove(buffer);
+        if (this.locked.remove(buffer)) {
+            this.lockedBytes -= buffer.capacity();
+            final Pointer pointer = Pointer.createConstant(ByteBufferFactory.address(buffer));
+            if (!Platform.isWindows()) {
+                LibC.INSTANCE.munlock(pointer, new NativeLong(buffer.capacity()));
+            } else {
+                Kernel32.INSTANCE.VirtualUnlock(pointer, new size_t(buffer.capacity()));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A retained buffer.
+     */
+    private static final class Entry {
+
+        private final ByteBuffer buffer;
+
+        /**
+         * Time the buffer was returned to the pool, in milliseconds.
+         */
+        private final long returned;
+
+        private Entry(ByteBuffer buffer, long returned) {
+            this.buffer = buffer;
+            this.returned = returned;
+        }
+    }
+
+}
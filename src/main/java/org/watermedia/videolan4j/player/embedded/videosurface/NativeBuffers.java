@@ -19,90 +19,187 @@
 
 package org.watermedia.videolan4j.player.embedded.videosurface;
 
-import com.sun.jna.NativeLong;
-import com.sun.jna.Platform;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import org.watermedia.videolan4j.ByteBufferFactory;
 import org.watermedia.videolan4j.VideoLan4J;
-import org.watermedia.videolan4j.binding.lib.Kernel32;
-import org.watermedia.videolan4j.binding.lib.LibC;
-import org.watermedia.videolan4j.binding.lib.size_t;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 final class NativeBuffers {
 
     private final boolean lockBuffers;
 
+    private final BufferAllocation allocation;
+
+    private final boolean highPriority;
+
+    /**
+     * Number of buffer slots, each slot is a complete set of plane buffers.
+     */
+    private final int slots;
+
     /**
-     * Native memory buffers, one for each plane.
+     * Size of each plane, in bytes.
      */
-    private ByteBuffer[] nativeBuffers;
+    private int[] sizes;
 
     /**
-     * Native memory pointers to each byte buffer.
+     * Native memory buffers, one for each plane of each slot, followed by the scratch planes once they are allocated.
      */
-    private Pointer[] pointers;
+    private ByteBuffer[][] nativeBuffers;
+
+    /**
+     * Native addresses of each plane buffer of each slot, laid out exactly as the native plane pointer array so a slot
+     * can be handed to the native library with a single primitive write.
+     * <p>
+     * Holds <code>long[]</code> arrays on 64-bit platforms and <code>int[]</code> arrays on 32-bit platforms.
+     */
+    private Object[] addresses;
 
     public NativeBuffers(final boolean lockBuffers) {
+        this(lockBuffers, 1);
+    }
+
+    public NativeBuffers(final boolean lockBuffers, final int slots) {
+        this(lockBuffers, slots, BufferAllocation.DEFAULT, false);
+    }
+
+    public NativeBuffers(final boolean lockBuffers, final int slots, final BufferAllocation allocation, final boolean highPriority) {
         this.lockBuffers = lockBuffers;
+        this.slots = slots;
+        this.allocation = allocation;
+        this.highPriority = highPriority;
     }
 
     /**
      *
      * Memory must be aligned correctly (on a 32-byte boundary) for the libvlc API functions, this is all taken care of
      * by the {@link ByteBufferFactory}.
+     * <p>
+     * Buffers are borrowed from the process-wide {@link NativeBufferPool}, which also takes care of locking them within
+     * the process-wide lock budget.
      *
-     * @return
+     * @return number of planes allocated for each slot
      */
     int allocate(final int[] pitches, final int[] lines) {
         final int planeCount = pitches.length;
-        this.nativeBuffers = new ByteBuffer[planeCount];
-        this.pointers = new Pointer[planeCount];
-        for (int i = 0; i < planeCount; i ++) {
-            final ByteBuffer buffer = ByteBufferFactory.alloc(pitches[i] * lines[i]);
+        this.sizes = new int[planeCount];
+        for (int i = 0; i < planeCount; i++) {
+            this.sizes[i] = pitches[i] * lines[i];
+        }
+        this.nativeBuffers = new ByteBuffer[this.slots][];
+        this.addresses = new Object[this.slots];
+        for (int slot = 0; slot < this.slots; slot++) {
+            this.allocate(slot);
+        }
+        return planeCount;
+    }
+
+    /**
+     * Allocate the scratch planes, a set of planes past the last slot that the decoder can write a picture into when
+     * no slot is available, if they are not already allocated.
+     * <p>
+     * The scratch planes are freed along with the slots.
+     *
+     * @return index of the scratch planes, for {@link #writeAddresses(int, Pointer)}
+     */
+    int scratch() {
+        if (this.nativeBuffers.length == this.slots) {
+            this.nativeBuffers = Arrays.copyOf(this.nativeBuffers, this.slots + 1);
+            this.addresses = Arrays.copyOf(this.addresses, this.slots + 1);
+            this.allocate(this.slots);
+        }
+        return this.slots;
+    }
+
+    private void allocate(final int slot) {
+        final NativeBufferPool pool = NativeBufferPool.get();
+        final ByteBuffer[] buffers = new ByteBuffer[this.sizes.length];
+        final long[] addresses = new long[this.sizes.length];
+        for (int i = 0; i < this.sizes.length; i++) {
+            final ByteBuffer buffer = pool.borrow(this.sizes[i], this.lockBuffers, this.highPriority, this.allocation);
             if (!ByteBufferFactory.isAligned(ByteBufferFactory.address(buffer))) {
                 VideoLan4J.LOGGER.warn("Detected an unaligned buffer. this might lead in I/O issues");
             }
-            this.nativeBuffers[i] = buffer;
-            this.pointers[i] = Pointer.createConstant(ByteBufferFactory.address(buffer));
-            if (this.lockBuffers) {
-                if (!Platform.isWindows()) {
-                    LibC.INSTANCE.mlock(this.pointers[i], new NativeLong(buffer.capacity()));
-                } else {
-                    Kernel32.INSTANCE.VirtualLock(this.pointers[i], new size_t(buffer.capacity()));
-                }
-            }
+            buffers[i] = buffer;
+            addresses[i] = ByteBufferFactory.address(buffer);
         }
-        return this.nativeBuffers.length;
+        this.nativeBuffers[slot] = buffers;
+        this.addresses[slot] = Native.POINTER_SIZE == 8 ? addresses : narrow(addresses);
     }
 
     void free() {
+        this.free(true);
+    }
+
+    /**
+     * Free the buffers.
+     *
+     * @param retain <code>true</code> to give the buffers back to the pool for re-use; <code>false</code> to free them
+     *               outright
+     */
+    void free(final boolean retain) {
         if (this.nativeBuffers != null) {
-            if (this.lockBuffers) {
-                for (int i = 0; i < this.nativeBuffers.length; i++) {
-                    if (!Platform.isWindows()) {
-                        LibC.INSTANCE.munlock(this.pointers[i], new NativeLong(this.nativeBuffers[i].capacity()));
+            final NativeBufferPool pool = NativeBufferPool.get();
+            // WATERMeDIA
+            for (final ByteBuffer[] buffers : this.nativeBuffers) {
+                for (final ByteBuffer buffer : buffers) {
+                    if (retain) {
+                        pool.giveBack(buffer);
                     } else {
-                        Kernel32.INSTANCE.VirtualUnlock(this.pointers[i], new size_t(this.nativeBuffers[i].capacity()));
+                        pool.release(buffer);
                     }
                 }
             }
-            // WATERMeDIA
-            for(final ByteBuffer buffer: this.nativeBuffers) {
-                ByteBufferFactory.dealloc(buffer);
-            }
             this.nativeBuffers = null;
-            this.pointers = null;
+            this.addresses = null;
         }
     }
 
-    ByteBuffer[] buffers() {
-        return this.nativeBuffers;
+    int slots() {
+        return this.slots;
     }
 
-    Pointer[] pointers() {
-        return this.pointers;
+    ByteBuffer[] buffers(final int slot) {
+        return this.nativeBuffers[slot];
+    }
+
+    /**
+     * Write the plane addresses of a slot to a native plane pointer array.
+     * <p>
+     * A single plane is written as a single primitive value, which is cheaper than an array copy; several planes are
+     * written with one array copy, which is cheaper than a write for each plane (see PlaneAddressWriteBenchmark).
+     *
+     * @param slot slot index
+     * @param planes native plane pointer array
+     */
+    void writeAddresses(final int slot, final Pointer planes) {
+        final Object addresses = this.addresses[slot];
+        if (addresses instanceof long[]) {
+            final long[] values = (long[]) addresses;
+            if (values.length == 1) {
+                planes.setLong(0, values[0]);
+            } else {
+                planes.write(0, values, 0, values.length);
+            }
+        } else {
+            final int[] values = (int[]) addresses;
+            if (values.length == 1) {
+                planes.setInt(0, values[0]);
+            } else {
+                planes.write(0, values, 0, values.length);
+            }
+        }
+    }
+
+    private static int[] narrow(final long[] addresses) {
+        final int[] result = new int[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            result[i] = (int) addresses[i];
+        }
+        return result;
     }
 
 }
@@ -0,0 +1,202 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import com.sun.jna.win32.StdCallLibrary;
+import org.watermedia.videolan4j.VideoLan4J;
+import org.watermedia.videolan4j.binding.lib.size_t;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates native buffers as whole pages mapped directly from the operating system.
+ * <p>
+ * On POSIX systems memory is mapped with <code>mmap</code>, and for huge pages the mapping is aligned to the huge page
+ * size and advised with <code>MADV_HUGEPAGE</code> so the kernel can back it with transparent huge pages. On Windows
+ * memory is committed with <code>VirtualAlloc</code>, which is always aligned to the allocation granularity - large
+ * pages on Windows need a special privilege, so huge pages are not requested there.
+ * <p>
+ * If the native functions are not available, or an allocation fails, <code>null</code> is returned and the caller is
+ * expected to fall back to a default allocation.
+ */
+final class PageAllocator {
+
+    /**
+     * Size of a (transparent) huge page on the platforms where they are requested.
+     */
+    static final int HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+
+    private static final int PROT_READ_WRITE = 0x1 | 0x2;
+
+    private static final int MAP_PRIVATE = 0x02;
+
+    private static final int MAP_ANONYMOUS = Platform.isMac() ? 0x1000 : 0x20;
+
+    private static final int MADV_HUGEPAGE = 14;
+
+    private static final int MEM_COMMIT_RESERVE = 0x1000 | 0x2000;
+
+    private static final int MEM_RELEASE = 0x8000;
+
+    private static final int PAGE_READWRITE = 0x04;
+
+    private static final long MAP_FAILED = -1;
+
+    /**
+     * Native POSIX memory mapping functions.
+     */
+    interface Posix extends Library {
+
+        Pointer mmap(Pointer address, NativeLong length, int protection, int flags, int fd, NativeLong offset);
+
+        int munmap(Pointer address, NativeLong length);
+
+        int madvise(Pointer address, NativeLong length, int advice);
+    }
+
+    /**
+     * Native Windows virtual memory functions.
+     */
+    interface Win32 extends StdCallLibrary {
+
+        Pointer VirtualAlloc(Pointer address, size_t size, int allocationType, int protect);
+
+        boolean VirtualFree(Pointer address, size_t size, int freeType);
+    }
+
+    private static final Posix POSIX;
+
+    private static final Win32 WIN32;
+
+    static {
+        Posix posix = null;
+        Win32 win32 = null;
+        try {
+            if (Platform.isWindows()) {
+                win32 = Native.loadLibrary("kernel32", Win32.class);
+            } else {
+                posix = Native.loadLibrary(Platform.C_LIBRARY_NAME, Posix.class);
+            }
+        } catch (Throwable t) {
+            VideoLan4J.LOGGER.warn("Page allocation is not available, falling back to default buffer allocation", t);
+        }
+        POSIX = posix;
+        WIN32 = win32;
+    }
+
+    private PageAllocator() {
+    }
+
+    /**
+     * A mapped region of memory, and the buffer exposing it.
+     */
+    static final class Mapping {
+
+        final ByteBuffer buffer;
+
+        final BufferAllocation allocation;
+
+        private final long address;
+
+        private final long length;
+
+        private Mapping(ByteBuffer buffer, BufferAllocation allocation, long address, long length) {
+            this.buffer = buffer;
+            this.allocation = allocation;
+            this.address = address;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Allocate a page-aligned buffer.
+     *
+     * @param size buffer size, in bytes
+     * @param allocation {@link BufferAllocation#PAGE_ALIGNED} or {@link BufferAllocation#HUGE_PAGES}
+     * @return mapping, or <code>null</code> if the memory could not be allocated
+     */
+    static Mapping allocate(int size, BufferAllocation allocation) {
+        if (WIN32 != null) {
+            final Pointer pointer = WIN32.VirtualAlloc(null, new size_t(size), MEM_COMMIT_RESERVE, PAGE_READWRITE);
+            return pointer != null ? new Mapping(pointer.getByteBuffer(0, size), allocation, Pointer.nativeValue(pointer), 0) : null;
+        }
+        if (POSIX == null) {
+            return null;
+        }
+        if (allocation == BufferAllocation.HUGE_PAGES && Platform.isLinux() && size >= HUGE_PAGE_SIZE) {
+            return mapHuge(size);
+        }
+        final Pointer pointer = map(size);
+        return pointer != null ? new Mapping(pointer.getByteBuffer(0, size), allocation, Pointer.nativeValue(pointer), size) : null;
+    }
+
+    /**
+     * Map memory aligned to the huge page size, by over-mapping and then unmapping the unaligned head and tail.
+     *
+     * @param size buffer size, in bytes
+     * @return mapping, or <code>null</code> if the memory could not be allocated
+     */
+    private static Mapping mapHuge(int size) {
+        final long length = ((long) size + HUGE_PAGE_SIZE - 1) / HUGE_PAGE_SIZE * HUGE_PAGE_SIZE;
+        final Pointer pointer = map(length + HUGE_PAGE_SIZE);
+        if (pointer == null) {
+            return null;
+        }
+        final long start = Pointer.nativeValue(pointer);
+        final long aligned = (start + HUGE_PAGE_SIZE - 1) & -HUGE_PAGE_SIZE;
+        if (aligned > start) {
+            POSIX.munmap(pointer, new NativeLong(aligned - start));
+        }
+        final long tail = start + length + HUGE_PAGE_SIZE - (aligned + length);
+        if (tail > 0) {
+            POSIX.munmap(new Pointer(aligned + length), new NativeLong(tail));
+        }
+        final Pointer alignedPointer = new Pointer(aligned);
+        if (POSIX.madvise(alignedPointer, new NativeLong(length), MADV_HUGEPAGE) != 0) {
+            // Transparent huge pages disabled, the memory is still perfectly usable
+            VideoLan4J.LOGGER.debug("Transparent huge pages not available for frame buffer");
+        }
+        return new Mapping(alignedPointer.getByteBuffer(0, size), BufferAllocation.HUGE_PAGES, aligned, length);
+    }
+
+    private static Pointer map(long length) {
+        final Pointer pointer = POSIX.mmap(null, new NativeLong(length), PROT_READ_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, new NativeLong(0));
+        return pointer != null && Pointer.nativeValue(pointer) != MAP_FAILED ? pointer : null;
+    }
+
+    /**
+     * Free a mapping.
+     *
+     * @param mapping mapping previously returned by {@link #allocate(int, BufferAllocation)}
+     */
+    static void free(Mapping mapping) {
+        if (WIN32 != null) {
+            WIN32.VirtualFree(new Pointer(mapping.address), new size_t(0), MEM_RELEASE);
+        } else if (POSIX != null) {
+            POSIX.munmap(new Pointer(mapping.address), new NativeLong(mapping.length));
+        }
+    }
+
+}
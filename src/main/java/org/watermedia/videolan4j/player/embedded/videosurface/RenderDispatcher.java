@@ -0,0 +1,213 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import org.watermedia.videolan4j.VideoLan4J;
+import org.watermedia.videolan4j.player.base.MediaPlayer;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.RenderCallback;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands displayed frames to a render callback on an executor, rather than on the native video output thread.
+ * <p>
+ * The native display callback only publishes the frame, holding a reference to it so the decoder does not write into
+ * its buffers, and returns immediately. A single drain task running on the executor renders whatever frame is the
+ * latest when it gets to run - if frames are published faster than the render callback consumes them, the older
+ * pending frames are superseded and released without ever being rendered. A slow render callback therefore costs
+ * dropped frames, rather than stalling the decoder.
+ * <p>
+ * At most one drain task is queued or running at any time, so the render callback is never invoked concurrently even
+ * on a shared multi-threaded executor.
+ * <p>
+ * Frames may optionally be discarded if they have waited longer than a maximum age by the time the drain task gets to
+ * them.
+ * <p>
+ * The frame buffer ring should have at least three buffers for this to be effective - one being written, one pending
+ * and one being rendered.
+ */
+final class RenderDispatcher implements Runnable {
+
+    private final Executor executor;
+
+    private final RenderCallback renderCallback;
+
+    private final FramePacing pacing;
+
+    private final DuplicateDetector duplicates;
+
+    private volatile MediaPlayer mediaPlayer;
+
+    /**
+     * Most recently published frame not yet taken by the drain task.
+     */
+    private final AtomicReference<VideoFrame> pending = new AtomicReference<>();
+
+    /**
+     * <code>true</code> while a drain task is queued or running.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Maximum age of a frame when rendered, in nanoseconds, or zero for no limit.
+     */
+    private volatile long maxAge;
+
+    private volatile long rendered;
+
+    private volatile long superseded;
+
+    private volatile long stale;
+
+    private volatile long lastLag;
+
+    private volatile long maxLag;
+
+    private volatile long totalLag;
+
+    RenderDispatcher(Executor executor, RenderCallback renderCallback, FramePacing pacing, DuplicateDetector duplicates) {
+        this.executor = executor;
+        this.renderCallback = renderCallback;
+        this.pacing = pacing;
+        this.duplicates = duplicates;
+    }
+
+    void mediaPlayer(MediaPlayer mediaPlayer) {
+        this.mediaPlayer = mediaPlayer;
+    }
+
+    Executor executor() {
+        return this.executor;
+    }
+
+    void maxAge(long maxAge) {
+        this.maxAge = Math.max(0, maxAge);
+    }
+
+    /**
+     * Publish a frame for rendering.
+     * <p>
+     * Ownership of the frame reference passes to the dispatcher. Must only be invoked from the display callback
+     * thread.
+     *
+     * @param frame frame to render
+     * @param now time the frame was published, in nanoseconds
+     */
+    void publish(VideoFrame frame, long now) {
+        frame.published(now);
+        final VideoFrame previous = this.pending.getAndSet(frame);
+        if (previous != null) {
+            previous.release();
+            this.superseded++;
+        }
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                VideoLan4J.LOGGER.warn("Render executor rejected the frame, it will not be rendered");
+                this.scheduled.set(false);
+                this.discard();
+            }
+        }
+    }
+
+    /**
+     * Release any frame still pending, without rendering it.
+     */
+    void discard() {
+        final VideoFrame frame = this.pending.getAndSet(null);
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    @Override
+    public void run() {
+        for (;;) {
+            final VideoFrame frame = this.pending.getAndSet(null);
+            if (frame != null) {
+                this.render(frame);
+                continue;
+            }
+            this.scheduled.set(false);
+            // A frame published after the last take but before the flag was cleared would otherwise never be rendered
+            if (this.pending.get() == null || !this.scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void render(VideoFrame frame) {
+        try {
+            final long lag = System.nanoTime() - frame.published();
+            final long maxAge = this.maxAge;
+            if (maxAge > 0 && lag > maxAge) {
+                this.stale++;
+                return;
+            }
+            final boolean unchanged = this.duplicates.unchanged(frame.view());
+            if (unchanged && this.duplicates.mode() == DuplicateFrameMode.SUPPRESS) {
+                return;
+            }
+            // Only frames actually rendered count towards the lag, the average is taken over the rendered count
+            this.lastLag = lag;
+            if (lag > this.maxLag) {
+                this.maxLag = lag;
+            }
+            this.totalLag += lag;
+            this.rendered++;
+            this.renderCallback.display(this.mediaPlayer, frame.view(), frame.sequence(), unchanged);
+            this.pacing.consumed(frame.displayTime(), this.pacing.now());
+        } catch (Throwable t) {
+            VideoLan4J.LOGGER.error("Render callback failed", t);
+        } finally {
+            frame.release();
+        }
+    }
+
+    long rendered() {
+        return this.rendered;
+    }
+
+    long superseded() {
+        return this.superseded;
+    }
+
+    long stale() {
+        return this.stale;
+    }
+
+    long lastLag() {
+        return this.lastLag;
+    }
+
+    long maxLag() {
+        return this.maxLag;
+    }
+
+    long averageLag() {
+        final long rendered = this.rendered;
+        return rendered > 0 ? this.totalLag / rendered : 0;
+    }
+
+}
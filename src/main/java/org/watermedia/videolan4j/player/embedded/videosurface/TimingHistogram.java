@@ -0,0 +1,135 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+/**
+ * Immutable histogram of time durations, in microseconds.
+ * <p>
+ * Bucket zero counts durations below one microsecond, every other bucket <code>i</code> counts durations from
+ * <code>2^(i-1)</code> up to (but not including) <code>2^i</code> microseconds. The last bucket also counts every
+ * longer duration.
+ */
+public final class TimingHistogram {
+
+    /**
+     * Number of buckets, the last bucket starts at a little over eight seconds.
+     */
+    public static final int BUCKET_COUNT = 25;
+
+    private final long[] counts;
+
+    private final long total;
+
+    TimingHistogram(long[] counts) {
+        this.counts = counts.clone();
+        long total = 0;
+        for (final long count : counts) {
+            total += count;
+        }
+        this.total = total;
+    }
+
+    /**
+     * Get the bucket for a duration.
+     *
+     * @param micros duration, in microseconds
+     * @return bucket index
+     */
+    static int bucket(long micros) {
+        if (micros <= 0) {
+            return 0;
+        }
+        return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Get the number of durations counted in a bucket.
+     *
+     * @param bucket bucket index
+     * @return count
+     */
+    public long count(int bucket) {
+        return this.counts[bucket];
+    }
+
+    /**
+     * Get the number of durations counted in all buckets.
+     *
+     * @return count
+     */
+    public long total() {
+        return this.total;
+    }
+
+    /**
+     * Get the smallest duration counted in a bucket.
+     *
+     * @param bucket bucket index
+     * @return duration, in microseconds
+     */
+    public static long lowerBound(int bucket) {
+        return bucket == 0 ? 0 : 1L << (bucket - 1);
+    }
+
+    /**
+     * Get the duration that ends a bucket.
+     *
+     * @param bucket bucket index
+     * @return duration, in microseconds, or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long upperBound(int bucket) {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Estimate a percentile.
+     * <p>
+     * The estimate is the upper bound of the bucket containing the percentile, so it is never lower than the actual
+     * value.
+     *
+     * @param percentile percentile, from 0 to 100
+     * @return duration, in microseconds, or zero if nothing has been counted
+     */
+    public long percentile(double percentile) {
+        if (this.total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(this.total * Math.max(0, Math.min(100, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += this.counts[i];
+            if (seen >= rank && seen > 0) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKET_COUNT - 1);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(80)
+            .append(getClass().getSimpleName()).append('[')
+            .append("total=").append(this.total).append(',')
+            .append("p50=").append(percentile(50)).append(',')
+            .append("p99=").append(percentile(99)).append(']')
+            .toString();
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface;
+
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameDescriptor;
+import org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameView;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Handle to a decoded video frame held in one of the buffers of a {@link CallbackVideoSurface}.
+ * <p>
+ * A frame is obtained from {@link CallbackVideoSurface#acquireFrame()}, or delivered to a {@link FrameSubscriber}, and
+ * <em>must</em> be given back with {@link #release()} (or {@link CallbackVideoSurface#releaseFrame(VideoFrame)}) once
+ * the consumer is done reading it. While the frame is held the decoder will not write into its buffers, unless the
+ * video surface only has a single buffer in which case the decoder and the consumer necessarily share it.
+ * <p>
+ * Handles are reused, one for each buffer, so no objects are created per frame. A handle must not be used after it has
+ * been released.
+ */
+public final class VideoFrame {
+
+    /**
+     * Ring that owns the frame buffers.
+     */
+    private final FrameRing ring;
+
+    /**
+     * Index of the buffer slot in the ring.
+     */
+    private final int slot;
+
+    /**
+     * Read-only view of the frame planes.
+     */
+    private final FrameView view;
+
+    /**
+     * Sequence number of the frame currently held in the buffers.
+     */
+    private volatile long sequence;
+
+    /**
+     * Time the frame was published for asynchronous rendering, in nanoseconds.
+     */
+    private long published;
+
+    private long lockTime;
+
+    private long unlockTime;
+
+    private long displayTime;
+
+    VideoFrame(FrameRing ring, int slot, FrameView view) {
+        this.ring = ring;
+        this.slot = slot;
+        this.view = view;
+    }
+
+    /**
+     * Get the index of the buffer slot holding this frame.
+     *
+     * @return slot index
+     */
+    public int slot() {
+        return this.slot;
+    }
+
+    /**
+     * Get the sequence number of this frame.
+     * <p>
+     * Sequence numbers increase monotonically with each displayed frame.
+     *
+     * @return sequence number
+     */
+    public long sequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Get the time the native library locked the buffers to decode this frame.
+     * <p>
+     * Frame times are on the native library clock, see {@link org.watermedia.videolan4j.factory.ApplicationApi#clock()}.
+     *
+     * @return time, in microseconds
+     */
+    public long lockTime() {
+        return this.lockTime;
+    }
+
+    /**
+     * Get the time the native library finished decoding this frame and unlocked the buffers.
+     *
+     * @return time, in microseconds
+     */
+    public long unlockTime() {
+        return this.unlockTime;
+    }
+
+    /**
+     * Get the time the native library displayed this frame.
+     *
+     * @return time, in microseconds
+     */
+    public long displayTime() {
+        return this.displayTime;
+    }
+
+    /**
+     * Get the description of the frame layout.
+     *
+     * @return frame descriptor
+     */
+    public FrameDescriptor descriptor() {
+        return this.ring.descriptor();
+    }
+
+    /**
+     * Get the native memory buffers for this frame, one for each plane.
+     *
+     * @return plane buffers
+     */
+    public ByteBuffer[] buffers() {
+        return this.view.nativeBuffers();
+    }
+
+    /**
+     * Get a read-only view of the frame planes, respecting the row pitch of each plane.
+     *
+     * @return frame view
+     */
+    public FrameView view() {
+        return this.view;
+    }
+
+    /**
+     * Take an additional reference to this frame.
+     * <p>
+     * Each call must be balanced by a corresponding call to {@link #release()}.
+     */
+    public void retain() {
+        this.ring.retain(this.slot);
+    }
+
+    /**
+     * Give back a reference to this frame.
+     */
+    public void release() {
+        this.ring.release(this.slot);
+    }
+
+    void sequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    void lockTime(long lockTime) {
+        this.lockTime = lockTime;
+    }
+
+    void unlockTime(long unlockTime) {
+        this.unlockTime = unlockTime;
+    }
+
+    void displayTime(long displayTime) {
+        this.displayTime = displayTime;
+    }
+
+    long published() {
+        return this.published;
+    }
+
+    void published(long published) {
+        this.published = published;
+    }
+
+}
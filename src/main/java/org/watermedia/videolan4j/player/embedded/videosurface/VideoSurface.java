@@ -28,6 +28,10 @@ import java.util.concurrent.Semaphore;
  */
 public abstract class VideoSurface {
 
+    /**
+     * @deprecated only honoured by a {@link CallbackVideoSurface} with a single frame buffer
+     */
+    @Deprecated
     protected Semaphore semaphore;
 
     /**
@@ -53,12 +57,28 @@ public abstract class VideoSurface {
      */
     public abstract void attach(MediaPlayer mediaPlayer);
 
-    // WATERMeDIA Patch: JANKY HACK FOR BUFFER UPLOADING
+    /**
+     * Get the semaphore guarding a shared frame buffer.
+     *
+     * @return semaphore, or <code>null</code> if none
+     * @deprecated see {@link #setSemaphore(Semaphore)}
+     */
+    @Deprecated
     public Semaphore getSemaphore() {
         return this.semaphore;
     }
 
-    // WATERMeDIA Patch: JANKY HACK FOR BUFFER UPLOADING
+    /**
+     * Set a semaphore guarding a shared frame buffer.
+     * <p>
+     * With a single frame buffer a {@link CallbackVideoSurface} acquires the semaphore before the decoder writes the
+     * next frame, so a consumer holding it while reading the buffer is never overwritten. With more than one frame
+     * buffer the semaphore is ignored.
+     *
+     * @param lock semaphore, or <code>null</code> for none
+     * @deprecated use more than one frame buffer and hold frames with {@link CallbackVideoSurface#acquireFrame()}
+     */
+    @Deprecated
     public void setSemaphore(Semaphore lock) {
         this.semaphore = lock;
     }
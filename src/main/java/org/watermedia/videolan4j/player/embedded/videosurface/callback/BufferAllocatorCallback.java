@@ -30,6 +30,8 @@ import java.nio.ByteBuffer;
 public interface BufferAllocatorCallback {
     /**
      * Invoked when new video buffers have been allocated.
+     * <p>
+     * When the video surface uses a ring of frame buffers this is invoked once for each buffer in the ring.
      *
      * @param buffers buffers that were allocated
      */
@@ -2,6 +2,17 @@ package org.watermedia.videolan4j.player.embedded.videosurface.callback;
 
 import java.nio.ByteBuffer;
 
+/**
+ * Callback invoked by the {@link org.watermedia.videolan4j.player.embedded.videosurface.CallbackVideoSurface} just
+ * before the video buffers are released.
+ */
 public interface BufferCleanupCallback {
+    /**
+     * Invoked before the video buffers are released.
+     * <p>
+     * When the video surface uses a ring of frame buffers this is invoked once for each buffer in the ring.
+     *
+     * @param buffers buffers that will be released
+     */
     void cleanupBuffers(ByteBuffer[] buffers);
 }
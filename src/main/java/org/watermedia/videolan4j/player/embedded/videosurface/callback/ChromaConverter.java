@@ -0,0 +1,505 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface.callback;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts video frames between chromas on the CPU, splitting the work across cores.
+ * <p>
+ * Supported conversions are I420, YV12, NV12, YUY2 and UYVY to RGBA or BGRA, and RGBA to and from BGRA. YUV sources
+ * are interpreted as limited range BT.601, which is what the native library produces for standard definition and most
+ * other content when converting itself.
+ * <p>
+ * A frame is divided into bands of rows and the bands are converted in parallel on a fork-join pool. Each band reads
+ * its source rows into Java arrays, widens and upsamples the samples into flat luma and chroma rows, converts those
+ * rows with fixed-point arithmetic into red, green and blue rows, then clamps and packs them into whole pixels in a
+ * separate loop for each output order. Every per-pixel loop is short, branch-free, unit-stride array code the JIT
+ * compiler can vectorise. The row arrays are kept for each worker thread and re-used for every band and frame.
+ * <p>
+ * Requesting a planar format such as I420 from the native library and converting here in parallel is generally cheaper
+ * than having the native library convert to RGB on its single video output thread.
+ * <p>
+ * A converter holds no state other than the row arrays of its worker threads, and may be shared.
+ */
+public final class ChromaConverter {
+
+    /**
+     * Default minimum number of rows converted by a single task.
+     */
+    public static final int DEFAULT_MIN_ROWS = 64;
+
+    private final ForkJoinPool pool;
+
+    private final int minRows;
+
+    /**
+     * Row arrays of each thread converting with this converter.
+     */
+    private final ThreadLocal<Rows> rows = ThreadLocal.withInitial(Rows::new);
+
+    /**
+     * Create a converter using the common fork-join pool.
+     */
+    public ChromaConverter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MIN_ROWS);
+    }
+
+    /**
+     * Create a converter.
+     *
+     * @param pool pool used to convert bands of rows in parallel, or <code>null</code> to convert on the calling thread
+     * @param minRows minimum number of rows converted by a single task, at least four
+     */
+    public ChromaConverter(ForkJoinPool pool, int minRows) {
+        this.pool = pool;
+        this.minRows = Math.max(4, minRows);
+    }
+
+    /**
+     * Check whether a conversion is supported.
+     *
+     * @param source source chroma layout
+     * @param target target chroma layout
+     * @return <code>true</code> if the conversion is supported; <code>false</code> if it is not
+     */
+    public static boolean isSupported(ChromaLayout source, ChromaLayout target) {
+        if (target != ChromaLayout.RGBA && target != ChromaLayout.BGRA) {
+            return false;
+        }
+        switch (source) {
+            case I420:
+            case YV12:
+            case NV12:
+            case YUY2:
+            case UYVY:
+            case RGBA:
+            case BGRA:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Convert a frame.
+     * <p>
+     * The destination buffer is written using absolute positions, its position and limit are not changed.
+     *
+     * @param source frame to convert
+     * @param target target chroma layout, {@link ChromaLayout#RGBA} or {@link ChromaLayout#BGRA}
+     * @param destination buffer to write the converted frame to
+     * @param destinationPitch pitch (row stride) of the destination, in bytes, at least four times the frame width
+     * @throws IllegalArgumentException if the conversion is not supported, or the destination is too small
+     */
+    public void convert(FrameView source, ChromaLayout target, ByteBuffer destination, int destinationPitch) {
+        final ChromaLayout layout = source.descriptor().layout();
+        if (layout == null || !isSupported(layout, target)) {
+            throw new IllegalArgumentException("Conversion from " + source.descriptor().chroma() + " to " + target + " is not supported");
+        }
+        final int width = source.width();
+        final int height = source.height();
+        if (destinationPitch < width * 4 || destination.capacity() < destinationPitch * (height - 1) + width * 4) {
+            throw new IllegalArgumentException("Destination buffer is too small");
+        }
+        final Conversion conversion = new Conversion(layout, target, source, destination, destinationPitch, this.rows);
+        if (this.pool == null || height <= this.minRows) {
+            conversion.rows(0, height);
+        } else {
+            this.pool.invoke(new Band(conversion, this.minRows, 0, height));
+        }
+    }
+
+    /**
+     * Task converting a band of rows, splitting itself while the band is large enough.
+     */
+    private static final class Band extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Conversion conversion;
+
+        private final int minRows;
+
+        private final int from;
+
+        private final int to;
+
+        private Band(Conversion conversion, int minRows, int from, int to) {
+            this.conversion = conversion;
+            this.minRows = minRows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.minRows) {
+                this.conversion.rows(this.from, this.to);
+            } else {
+                // Split on an even row so a pair of 4:2:0 luma rows is never separated from its chroma row
+                int middle = (this.from + (this.to - this.from) / 2) & ~1;
+                if (middle <= this.from) {
+                    // Rounding down can land back on the start of a short band, which would never get any smaller
+                    middle = this.from + 2;
+                }
+                invokeAll(new Band(this.conversion, this.minRows, this.from, middle), new Band(this.conversion, this.minRows, middle, this.to));
+            }
+        }
+    }
+
+    /**
+     * Row arrays of a single converting thread, grown as needed and re-used for every band and frame.
+     */
+    private static final class Rows {
+
+        /**
+         * Source row for each plane.
+         */
+        private final byte[][] in = new byte[3][0];
+
+        /**
+         * Upsampled luma, blue-difference and red-difference samples for each pixel of a row.
+         */
+        private int[] y = new int[0];
+
+        private int[] u = new int[0];
+
+        private int[] v = new int[0];
+
+        /**
+         * Red, green and blue components for each pixel of a row, before clamping.
+         */
+        private int[] r = new int[0];
+
+        private int[] g = new int[0];
+
+        private int[] b = new int[0];
+
+        /**
+         * Converted row, one packed pixel for each element.
+         */
+        private int[] pixels = new int[0];
+
+        /**
+         * Converted row as bytes, for destinations that can not be written a whole pixel at a time.
+         */
+        private byte[] out = new byte[0];
+
+        private void size(int[] rowBytes, int width) {
+            for (int i = 0; i < rowBytes.length; i++) {
+                if (this.in[i].length < rowBytes[i]) {
+                    this.in[i] = new byte[rowBytes[i]];
+                }
+            }
+            if (this.y.length < width) {
+                this.y = new int[width];
+                this.u = new int[width];
+                this.v = new int[width];
+                this.r = new int[width];
+                this.g = new int[width];
+                this.b = new int[width];
+                this.pixels = new int[width];
+                this.out = new byte[width << 2];
+            }
+        }
+    }
+
+    /**
+     * A single frame conversion.
+     */
+    private static final class Conversion {
+
+        private final ChromaLayout source;
+
+        private final boolean bgra;
+
+        private final ByteBuffer[] planes;
+
+        private final int[] pitches;
+
+        private final int[] rowBytes;
+
+        private final int width;
+
+        private final ByteBuffer destination;
+
+        private final int destinationPitch;
+
+        private final ThreadLocal<Rows> rows;
+
+        private Conversion(ChromaLayout source, ChromaLayout target, FrameView frame, ByteBuffer destination, int destinationPitch, ThreadLocal<Rows> rows) {
+            this.source = source;
+            this.bgra = target == ChromaLayout.BGRA;
+            this.planes = new ByteBuffer[frame.planeCount()];
+            this.pitches = new int[frame.planeCount()];
+            this.rowBytes = new int[frame.planeCount()];
+            for (int i = 0; i < this.planes.length; i++) {
+                this.planes[i] = frame.plane(i);
+                this.pitches[i] = frame.pitch(i);
+                this.rowBytes[i] = frame.rowBytes(i);
+            }
+            if (source == ChromaLayout.YUY2 || source == ChromaLayout.UYVY) {
+                // An odd width still needs the whole of the last group of four bytes
+                this.rowBytes[0] = Math.min(this.pitches[0], ((frame.width() + 1) >> 1) << 2);
+            }
+            this.width = frame.width();
+            this.destination = destination;
+            this.destinationPitch = destinationPitch;
+            this.rows = rows;
+        }
+
+        /**
+         * Convert a range of rows.
+         * <p>
+         * Every task works on its own duplicates of the buffers, so only absolute regions are shared between threads.
+         *
+         * @param from first row, inclusive
+         * @param to last row, exclusive
+         */
+        private void rows(int from, int to) {
+            final Rows rows = this.rows.get();
+            rows.size(this.rowBytes, this.width);
+            final byte[][] in = rows.in;
+            final ByteBuffer[] planes = new ByteBuffer[this.planes.length];
+            for (int i = 0; i < planes.length; i++) {
+                planes[i] = this.planes[i].duplicate();
+            }
+            final ByteBuffer destination = this.destination.duplicate();
+            destination.clear();
+            // Whole pixels are written as little-endian ints, which puts the bytes in memory in the target order
+            final IntBuffer pixels = (this.destinationPitch & 3) == 0 ? destination.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer() : null;
+            for (int row = from; row < to; row++) {
+                switch (this.source) {
+                    case I420:
+                        this.read(planes, in, 0, row);
+                        this.read(planes, in, 1, row >> 1);
+                        this.read(planes, in, 2, row >> 1);
+                        luma(in[0], 0, 1, rows.y, this.width);
+                        planar(in[1], rows.u, this.width);
+                        planar(in[2], rows.v, this.width);
+                        break;
+                    case YV12:
+                        this.read(planes, in, 0, row);
+                        this.read(planes, in, 1, row >> 1);
+                        this.read(planes, in, 2, row >> 1);
+                        luma(in[0], 0, 1, rows.y, this.width);
+                        planar(in[2], rows.u, this.width);
+                        planar(in[1], rows.v, this.width);
+                        break;
+                    case NV12:
+                        this.read(planes, in, 0, row);
+                        this.read(planes, in, 1, row >> 1);
+                        luma(in[0], 0, 1, rows.y, this.width);
+                        chroma(in[1], 0, 2, rows.u, this.width);
+                        chroma(in[1], 1, 2, rows.v, this.width);
+                        break;
+                    case YUY2:
+                        this.read(planes, in, 0, row);
+                        luma(in[0], 0, 2, rows.y, this.width);
+                        chroma(in[0], 1, 4, rows.u, this.width);
+                        chroma(in[0], 3, 4, rows.v, this.width);
+                        break;
+                    case UYVY:
+                        this.read(planes, in, 0, row);
+                        luma(in[0], 1, 2, rows.y, this.width);
+                        chroma(in[0], 0, 4, rows.u, this.width);
+                        chroma(in[0], 2, 4, rows.v, this.width);
+                        break;
+                    default:
+                        this.read(planes, in, 0, row);
+                        swizzle(in[0], rows.out, this.width, this.source == ChromaLayout.BGRA != this.bgra);
+                        this.write(destination, rows.out, row);
+                        continue;
+                }
+                matrix(rows, this.width);
+                if (this.bgra) {
+                    bgra(rows.r, rows.g, rows.b, rows.pixels, this.width);
+                } else {
+                    rgba(rows.r, rows.g, rows.b, rows.pixels, this.width);
+                }
+                if (pixels != null) {
+                    pixels.position((row * this.destinationPitch) >> 2);
+                    pixels.put(rows.pixels, 0, this.width);
+                } else {
+                    unpack(rows.pixels, rows.out, this.width);
+                    this.write(destination, rows.out, row);
+                }
+            }
+        }
+
+        private void read(ByteBuffer[] planes, byte[][] in, int plane, int row) {
+            final ByteBuffer buffer = planes[plane];
+            buffer.position(row * this.pitches[plane]);
+            buffer.get(in[plane], 0, this.rowBytes[plane]);
+        }
+
+        private void write(ByteBuffer destination, byte[] out, int row) {
+            destination.position(row * this.destinationPitch);
+            destination.put(out, 0, this.width << 2);
+        }
+    }
+
+    /**
+     * Widen the luma samples of a row.
+     *
+     * @param in source row
+     * @param offset offset of the first sample
+     * @param stride distance between samples, in bytes
+     * @param y luma row
+     * @param width row width, in pixels
+     */
+    private static void luma(byte[] in, int offset, int stride, int[] y, int width) {
+        if (stride == 1) {
+            for (int x = 0; x < width; x++) {
+                y[x] = in[offset + x] & 0xff;
+            }
+        } else {
+            for (int x = 0; x < width; x++) {
+                y[x] = in[offset + x * stride] & 0xff;
+            }
+        }
+    }
+
+    /**
+     * Widen and upsample a row of horizontally subsampled chroma held in its own plane.
+     *
+     * @param in source row, one sample for each pair of pixels
+     * @param c chroma row, one sample for each pixel
+     * @param width row width, in pixels
+     */
+    private static void planar(byte[] in, int[] c, int width) {
+        final int pairs = width >> 1;
+        for (int x = 0; x < pairs; x++) {
+            final int sample = in[x] & 0xff;
+            c[x << 1] = sample;
+            c[(x << 1) + 1] = sample;
+        }
+        if ((width & 1) != 0) {
+            c[width - 1] = in[pairs] & 0xff;
+        }
+    }
+
+    /**
+     * Widen and upsample a row of horizontally subsampled chroma interleaved with other samples.
+     *
+     * @param in source row
+     * @param offset offset of the first sample
+     * @param stride distance between samples, in bytes, each sample covers a pair of pixels
+     * @param c chroma row, one sample for each pixel
+     * @param width row width, in pixels
+     */
+    private static void chroma(byte[] in, int offset, int stride, int[] c, int width) {
+        final int pairs = width >> 1;
+        for (int x = 0; x < pairs; x++) {
+            final int sample = in[offset + x * stride] & 0xff;
+            c[x << 1] = sample;
+            c[(x << 1) + 1] = sample;
+        }
+        if ((width & 1) != 0) {
+            c[width - 1] = in[offset + pairs * stride] & 0xff;
+        }
+    }
+
+    /**
+     * Convert a row of limited range BT.601 YUV samples to RGB, using 8-bit fixed point coefficients.
+     * <p>
+     * Each component has a loop of its own - the JIT compiler can not tell the row arrays apart, so it does not vectorise
+     * a loop storing to more than one of them. The components are left unclamped, the packing loops clamp them.
+     */
+    private static void matrix(Rows rows, int width) {
+        final int[] y = rows.y;
+        final int[] u = rows.u;
+        final int[] v = rows.v;
+        final int[] r = rows.r;
+        final int[] g = rows.g;
+        final int[] b = rows.b;
+        for (int x = 0; x < width; x++) {
+            r[x] = (298 * (y[x] - 16) + 128 + 409 * (v[x] - 128)) >> 8;
+        }
+        for (int x = 0; x < width; x++) {
+            g[x] = (298 * (y[x] - 16) + 128 - 100 * (u[x] - 128) - 208 * (v[x] - 128)) >> 8;
+        }
+        for (int x = 0; x < width; x++) {
+            b[x] = (298 * (y[x] - 16) + 128 + 516 * (u[x] - 128)) >> 8;
+        }
+    }
+
+    /**
+     * Clamp and pack a row of components into RGBA pixels, packed so that written as little-endian ints their bytes
+     * are in RGBA order.
+     */
+    private static void rgba(int[] r, int[] g, int[] b, int[] pixels, int width) {
+        for (int x = 0; x < width; x++) {
+            pixels[x] = 0xff000000 | clamp(b[x]) << 16 | clamp(g[x]) << 8 | clamp(r[x]);
+        }
+    }
+
+    /**
+     * Clamp and pack a row of components into BGRA pixels, packed so that written as little-endian ints their bytes
+     * are in BGRA order.
+     */
+    private static void bgra(int[] r, int[] g, int[] b, int[] pixels, int width) {
+        for (int x = 0; x < width; x++) {
+            pixels[x] = 0xff000000 | clamp(r[x]) << 16 | clamp(g[x]) << 8 | clamp(b[x]);
+        }
+    }
+
+    /**
+     * Clamp a component to 0 to 255 without branches or conditional moves, which the JIT compiler does not vectorise.
+     */
+    private static int clamp(int value) {
+        final int positive = value & ~(value >> 31);
+        return (positive | ((255 - positive) >> 31)) & 0xff;
+    }
+
+    /**
+     * Unpack a row of packed pixels to bytes, in little-endian order.
+     */
+    private static void unpack(int[] pixels, byte[] out, int width) {
+        for (int x = 0; x < width; x++) {
+            final int pixel = pixels[x];
+            final int i = x << 2;
+            out[i    ] = (byte) pixel;
+            out[i + 1] = (byte) (pixel >> 8);
+            out[i + 2] = (byte) (pixel >> 16);
+            out[i + 3] = (byte) (pixel >>> 24);
+        }
+    }
+
+    private static void swizzle(byte[] in, byte[] out, int width, boolean swap) {
+        final int length = width << 2;
+        if (!swap) {
+            System.arraycopy(in, 0, out, 0, length);
+            return;
+        }
+        for (int i = 0; i < length; i += 4) {
+            out[i    ] = in[i + 2];
+            out[i + 1] = in[i + 1];
+            out[i + 2] = in[i    ];
+            out[i + 3] = in[i + 3];
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface.callback;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enumeration of the plane layouts of known chromas.
+ * <p>
+ * For each plane the layout gives the number of bytes per sample and the horizontal and vertical sub-sampling, which
+ * is what is needed to know how much of each row, and how many rows, of a plane actually hold picture data - the
+ * pitch and line count of a plane may be padded beyond that.
+ */
+public enum ChromaLayout {
+
+    RV32("RV32", new int[] {4}, new int[] {0}, new int[] {0}), // Packed 32-bit RGB
+    RGBA("RGBA", new int[] {4}, new int[] {0}, new int[] {0}), // Packed 32-bit RGBA
+    BGRA("BGRA", new int[] {4}, new int[] {0}, new int[] {0}), // Packed 32-bit BGRA
+    RV24("RV24", new int[] {3}, new int[] {0}, new int[] {0}), // Packed 24-bit RGB
+    RV16("RV16", new int[] {2}, new int[] {0}, new int[] {0}), // Packed 16-bit RGB 5:6:5
+    YUY2("YUY2", new int[] {2}, new int[] {0}, new int[] {0}), // Packed YUV 4:2:2, Y0 U Y1 V
+    UYVY("UYVY", new int[] {2}, new int[] {0}, new int[] {0}), // Packed YUV 4:2:2, U Y0 V Y1
+    I420("I420", new int[] {1, 1, 1}, new int[] {0, 1, 1}, new int[] {0, 1, 1}), // Planar YUV 4:2:0, Y U V
+    YV12("YV12", new int[] {1, 1, 1}, new int[] {0, 1, 1}, new int[] {0, 1, 1}), // Planar YUV 4:2:0, Y V U
+    NV12("NV12", new int[] {1, 2}, new int[] {0, 1}, new int[] {0, 1}); // Semi-planar YUV 4:2:0, Y then interleaved UV
+
+    private static final Map<String, ChromaLayout> CHROMA_MAP = new HashMap<String, ChromaLayout>();
+
+    static {
+        for (ChromaLayout layout : ChromaLayout.values()) {
+            CHROMA_MAP.put(layout.chroma, layout);
+        }
+    }
+
+    /**
+     * Get the layout for a chroma.
+     *
+     * @param chroma chroma, e.g. "RV32"
+     * @return layout, or <code>null</code> if the chroma is not known
+     */
+    public static ChromaLayout layout(String chroma) {
+        return chroma != null ? CHROMA_MAP.get(chroma.trim()) : null;
+    }
+
+    private final String chroma;
+
+    private final int[] bytesPerSample;
+
+    private final int[] horizontalShift;
+
+    private final int[] verticalShift;
+
+    ChromaLayout(String chroma, int[] bytesPerSample, int[] horizontalShift, int[] verticalShift) {
+        this.chroma = chroma;
+        this.bytesPerSample = bytesPerSample;
+        this.horizontalShift = horizontalShift;
+        this.verticalShift = verticalShift;
+    }
+
+    /**
+     * Get the chroma.
+     *
+     * @return chroma
+     */
+    public String chroma() {
+        return this.chroma;
+    }
+
+    /**
+     * Get the number of planes.
+     *
+     * @return plane count
+     */
+    public int planeCount() {
+        return this.bytesPerSample.length;
+    }
+
+    /**
+     * Get the number of bytes of picture data in a row of a plane.
+     *
+     * @param plane plane index
+     * @param width picture width, in pixels
+     * @return number of bytes
+     */
+    public int rowBytes(int plane, int width) {
+        final int shift = this.horizontalShift[plane];
+        return ((width + (1 << shift) - 1) >> shift) * this.bytesPerSample[plane];
+    }
+
+    /**
+     * Get the number of rows of picture data in a plane.
+     *
+     * @param plane plane index
+     * @param height picture height, in pixels
+     * @return number of rows
+     */
+    public int rows(int plane, int height) {
+        final int shift = this.verticalShift[plane];
+        return (height + (1 << shift) - 1) >> shift;
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface.callback;
+
+import org.watermedia.videolan4j.BufferFormat;
+
+import java.util.Arrays;
+
+/**
+ * Immutable description of the video frames delivered by a
+ * {@link org.watermedia.videolan4j.player.embedded.videosurface.CallbackVideoSurface}.
+ * <p>
+ * A new descriptor is created each time the video format is negotiated with the native library, so everything needed
+ * to interpret the frame buffers is available to the render callback without making any native calls per frame.
+ * <p>
+ * Plane offsets give the position of each plane if the planes were laid out one after another in a single contiguous
+ * buffer, which is convenient when packing a whole frame into one upload buffer.
+ */
+public final class FrameDescriptor {
+
+    private final BufferFormat bufferFormat;
+
+    private final String chroma;
+
+    private final String sourceChroma;
+
+    private final int width;
+
+    private final int height;
+
+    private final int[] pitches;
+
+    private final int[] lines;
+
+    private final int[] offsets;
+
+    private final int frameSize;
+
+    private final ChromaLayout layout;
+
+    private final int[] rowBytes;
+
+    private final int[] rows;
+
+    /**
+     * Create a frame descriptor.
+     *
+     * @param bufferFormat buffer format the frames were negotiated with
+     * @param chroma negotiated chroma
+     * @param width frame width, in pixels
+     * @param height frame height, in pixels
+     * @param pitches pitch of each plane, in bytes
+     * @param lines number of lines of each plane
+     */
+    public FrameDescriptor(BufferFormat bufferFormat, String chroma, int width, int height, int[] pitches, int[] lines) {
+        this(bufferFormat, chroma, chroma, width, height, pitches, lines);
+    }
+
+    /**
+     * Create a frame descriptor.
+     *
+     * @param bufferFormat buffer format the frames were negotiated with
+     * @param chroma negotiated chroma
+     * @param sourceChroma chroma produced by the decoder, before any conversion by the native library
+     * @param width frame width, in pixels
+     * @param height frame height, in pixels
+     * @param pitches pitch of each plane, in bytes
+     * @param lines number of lines of each plane
+     */
+    public FrameDescriptor(BufferFormat bufferFormat, String chroma, String sourceChroma, int width, int height, int[] pitches, int[] lines) {
+        this.bufferFormat = bufferFormat;
+        this.chroma = chroma;
+        this.sourceChroma = sourceChroma;
+        this.width = width;
+        this.height = height;
+        this.pitches = pitches.clone();
+        this.lines = lines.clone();
+        this.offsets = new int[pitches.length];
+        int offset = 0;
+        for (int i = 0; i < pitches.length; i++) {
+            this.offsets[i] = offset;
+            offset += pitches[i] * lines[i];
+        }
+        this.frameSize = offset;
+        this.layout = ChromaLayout.layout(chroma);
+        this.rowBytes = new int[pitches.length];
+        this.rows = new int[pitches.length];
+        for (int i = 0; i < pitches.length; i++) {
+            // Without a known layout all of each plane has to be assumed to be picture data
+            if (this.layout != null && i < this.layout.planeCount()) {
+                this.rowBytes[i] = Math.min(pitches[i], this.layout.rowBytes(i, width));
+                this.rows[i] = Math.min(lines[i], this.layout.rows(i, height));
+            } else {
+                this.rowBytes[i] = pitches[i];
+                this.rows[i] = lines[i];
+            }
+        }
+    }
+
+    /**
+     * Get the buffer format the frames were negotiated with.
+     *
+     * @return buffer format
+     */
+    public BufferFormat bufferFormat() {
+        return this.bufferFormat;
+    }
+
+    /**
+     * Get the chroma (pixel format) of the frames, e.g. "RV32".
+     *
+     * @return chroma
+     */
+    public String chroma() {
+        return this.chroma;
+    }
+
+    /**
+     * Get the chroma produced by the decoder, before any conversion by the native library.
+     * <p>
+     * If this is the same as {@link #chroma()} the frames are delivered without any colour conversion.
+     *
+     * @return source chroma
+     */
+    public String sourceChroma() {
+        return this.sourceChroma;
+    }
+
+    /**
+     * Check whether the native library converts the frames from the source chroma.
+     *
+     * @return <code>true</code> if the frames are converted; <code>false</code> if they are delivered as decoded
+     */
+    public boolean isConverted() {
+        return this.sourceChroma != null && !this.sourceChroma.equals(this.chroma);
+    }
+
+    /**
+     * Get the plane layout of the chroma.
+     *
+     * @return layout, or <code>null</code> if the chroma is not known
+     */
+    public ChromaLayout layout() {
+        return this.layout;
+    }
+
+    /**
+     * Get the frame width.
+     *
+     * @return width, in pixels
+     */
+    public int width() {
+        return this.width;
+    }
+
+    /**
+     * Get the frame height.
+     *
+     * @return height, in pixels
+     */
+    public int height() {
+        return this.height;
+    }
+
+    /**
+     * Get the number of planes.
+     *
+     * @return plane count
+     */
+    public int planeCount() {
+        return this.pitches.length;
+    }
+
+    /**
+     * Get the pitch (row stride) of a plane.
+     *
+     * @param plane plane index
+     * @return pitch, in bytes
+     */
+    public int pitch(int plane) {
+        return this.pitches[plane];
+    }
+
+    /**
+     * Get the number of lines of a plane.
+     *
+     * @param plane plane index
+     * @return number of lines
+     */
+    public int lines(int plane) {
+        return this.lines[plane];
+    }
+
+    /**
+     * Get the number of bytes of picture data in each row of a plane, excluding any padding up to the pitch.
+     *
+     * @param plane plane index
+     * @return number of bytes
+     */
+    public int rowBytes(int plane) {
+        return this.rowBytes[plane];
+    }
+
+    /**
+     * Get the number of rows of picture data in a plane, excluding any padding lines.
+     *
+     * @param plane plane index
+     * @return number of rows
+     */
+    public int rows(int plane) {
+        return this.rows[plane];
+    }
+
+    /**
+     * Get the offset of a plane within a contiguous frame layout.
+     *
+     * @param plane plane index
+     * @return offset, in bytes
+     */
+    public int offset(int plane) {
+        return this.offsets[plane];
+    }
+
+    /**
+     * Get the size of a plane.
+     *
+     * @param plane plane index
+     * @return size, in bytes
+     */
+    public int planeSize(int plane) {
+        return this.pitches[plane] * this.lines[plane];
+    }
+
+    /**
+     * Get the total size of all planes.
+     *
+     * @return size, in bytes
+     */
+    public int frameSize() {
+        return this.frameSize;
+    }
+
+    /**
+     * Get the pitch of each plane.
+     *
+     * @return copy of the plane pitches, in bytes
+     */
+    public int[] pitches() {
+        return this.pitches.clone();
+    }
+
+    /**
+     * Get the number of lines of each plane.
+     *
+     * @return copy of the plane line counts
+     */
+    public int[] lines() {
+        return this.lines.clone();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(100)
+            .append(getClass().getSimpleName()).append('[')
+            .append("chroma=").append(this.chroma).append(',')
+            .append("sourceChroma=").append(this.sourceChroma).append(',')
+            .append("width=").append(this.width).append(',')
+            .append("height=").append(this.height).append(',')
+            .append("pitches=").append(Arrays.toString(this.pitches)).append(',')
+            .append("lines=").append(Arrays.toString(this.lines)).append(']')
+            .toString();
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface.callback;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Read-only view of the planes of a video frame, directly over the native frame buffers.
+ * <p>
+ * The view gives each plane as a read-only buffer, together with the row pitch and the amount of each row that holds
+ * picture data, so a consumer can upload or encode a frame straight from native memory without first copying it to
+ * the Java heap. Where a plane has no padding, {@link #isContiguous(int)}, the whole plane can be handed over in a
+ * single operation; otherwise {@link #forEachRow(int, RowConsumer)} visits just the picture data of each row.
+ * <p>
+ * A view is created once for each frame buffer when the video format is negotiated, and is then reused for every frame
+ * subsequently written into that buffer. The plane buffers are shared by every consumer of the frame so they must only
+ * be read with absolute get methods, or be duplicated first, rather than having their position changed.
+ * <p>
+ * Like the native buffers themselves, a view is only valid while the frame it was delivered with is.
+ */
+public final class FrameView {
+
+    /**
+     * Component that receives the rows of a plane.
+     */
+    public interface RowConsumer {
+
+        /**
+         * Receive a row of picture data.
+         *
+         * @param plane plane buffer, shared read-only view of the whole plane
+         * @param row row index
+         * @param offset offset of the first byte of the row within the plane buffer
+         * @param length number of bytes of picture data in the row
+         */
+        void row(ByteBuffer plane, int row, int offset, int length);
+    }
+
+    private final FrameDescriptor descriptor;
+
+    private final ByteBuffer[] nativeBuffers;
+
+    private final ByteBuffer[] planes;
+
+    /**
+     * Create a frame view.
+     *
+     * @param descriptor description of the frame layout
+     * @param nativeBuffers native buffers, one for each plane
+     */
+    public FrameView(FrameDescriptor descriptor, ByteBuffer[] nativeBuffers) {
+        this.descriptor = descriptor;
+        this.nativeBuffers = nativeBuffers;
+        this.planes = new ByteBuffer[nativeBuffers.length];
+        for (int i = 0; i < nativeBuffers.length; i++) {
+            final ByteBuffer plane = nativeBuffers[i].duplicate();
+            plane.clear();
+            plane.limit(Math.min(plane.capacity(), descriptor.planeSize(i)));
+            this.planes[i] = plane.slice().asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Get the description of the frame layout.
+     *
+     * @return frame descriptor
+     */
+    public FrameDescriptor descriptor() {
+        return this.descriptor;
+    }
+
+    /**
+     * Get the underlying native buffers.
+     *
+     * @return native buffers, one for each plane
+     */
+    public ByteBuffer[] nativeBuffers() {
+        return this.nativeBuffers;
+    }
+
+    /**
+     * Get the number of planes.
+     *
+     * @return plane count
+     */
+    public int planeCount() {
+        return this.planes.length;
+    }
+
+    /**
+     * Get a read-only buffer of a plane.
+     * <p>
+     * The buffer covers exactly the pitch multiplied by the number of lines of the plane, including any padding.
+     * <p>
+     * The buffer is in native byte order, as the native library writes multi-byte samples, so e.g. a packed 32-bit
+     * pixel is read correctly by {@link ByteBuffer#getInt(int)}. A duplicate or slice of the buffer is big-endian again,
+     * and needs its order set if multi-byte values are read from it.
+     *
+     * @param plane plane index
+     * @return plane buffer
+     */
+    public ByteBuffer plane(int plane) {
+        return this.planes[plane];
+    }
+
+    /**
+     * Get the pitch (row stride) of a plane.
+     *
+     * @param plane plane index
+     * @return pitch, in bytes
+     */
+    public int pitch(int plane) {
+        return this.descriptor.pitch(plane);
+    }
+
+    /**
+     * Get the number of bytes of picture data in each row of a plane.
+     *
+     * @param plane plane index
+     * @return number of bytes
+     */
+    public int rowBytes(int plane) {
+        return this.descriptor.rowBytes(plane);
+    }
+
+    /**
+     * Get the number of rows of picture data in a plane.
+     *
+     * @param plane plane index
+     * @return number of rows
+     */
+    public int rows(int plane) {
+        return this.descriptor.rows(plane);
+    }
+
+    /**
+     * Get the visible width of the frame.
+     *
+     * @return width, in pixels
+     */
+    public int width() {
+        return this.descriptor.width();
+    }
+
+    /**
+     * Get the visible height of the frame.
+     *
+     * @return height, in pixels
+     */
+    public int height() {
+        return this.descriptor.height();
+    }
+
+    /**
+     * Check whether the picture data of a plane is contiguous, i.e. the rows have no padding.
+     *
+     * @param plane plane index
+     * @return <code>true</code> if the plane has no row padding; <code>false</code> if it does
+     */
+    public boolean isContiguous(int plane) {
+        return this.descriptor.pitch(plane) == this.descriptor.rowBytes(plane);
+    }
+
+    /**
+     * Visit the picture data of each row of a plane, skipping any padding.
+     *
+     * @param plane plane index
+     * @param consumer component to receive the rows
+     */
+    public void forEachRow(int plane, RowConsumer consumer) {
+        final ByteBuffer buffer = this.planes[plane];
+        final int pitch = this.descriptor.pitch(plane);
+        final int rowBytes = this.descriptor.rowBytes(plane);
+        final int rows = this.descriptor.rows(plane);
+        for (int row = 0, offset = 0; row < rows; row++, offset += pitch) {
+            consumer.row(buffer, row, offset, rowBytes);
+        }
+    }
+
+}
@@ -47,4 +47,63 @@ public interface RenderCallback {
      */
     void display(MediaPlayer mediaPlayer, ByteBuffer[] nativeBuffers, BufferFormat bufferFormat);
 
+    /**
+     * Call-back when ready to display a video frame.
+     * <p>
+     * The frame descriptor is created once when the video format is negotiated so everything about the frame layout is
+     * available without any native calls.
+     * <p>
+     * The default implementation delegates to {@link #display(MediaPlayer, ByteBuffer[], BufferFormat)}.
+     * <p>
+     * Implementations of this method must execute as quickly as possible.
+     *
+     * @param mediaPlayer media player to which the event relates
+     * @param nativeBuffers video data for one frame
+     * @param descriptor description of the frame layout
+     * @param sequence sequence number of the frame, increasing monotonically with each frame
+     */
+    default void display(MediaPlayer mediaPlayer, ByteBuffer[] nativeBuffers, FrameDescriptor descriptor, long sequence) {
+        display(mediaPlayer, nativeBuffers, descriptor.bufferFormat());
+    }
+
+    /**
+     * Call-back when ready to display a video frame.
+     * <p>
+     * The frame view gives read-only access to each plane
+     * directly in native memory, with the row pitch and the extent of the picture data in each plane, so the frame can
+     * be consumed without copying it.
+     * <p>
+     * The default implementation delegates to {@link #display(MediaPlayer, ByteBuffer[], FrameDescriptor, long)}.
+     * <p>
+     * Implementations of this method must execute as quickly as possible.
+     *
+     * @param mediaPlayer media player to which the event relates
+     * @param frame view of the frame planes
+     * @param sequence sequence number of the frame, increasing monotonically with each frame
+     */
+    default void display(MediaPlayer mediaPlayer, FrameView frame, long sequence) {
+        display(mediaPlayer, frame.nativeBuffers(), frame.descriptor(), sequence);
+    }
+
+    /**
+     * Call-back when ready to display a video frame.
+     * <p>
+     * This is the method actually invoked by the video surface. If duplicate frame detection is enabled on the video
+     * surface, <code>unchanged</code> reports whether the frame is identical to the previous frame delivered, in which
+     * case e.g. uploading it to a texture again can be skipped.
+     * <p>
+     * The default implementation delegates to {@link #display(MediaPlayer, FrameView, long)}.
+     * <p>
+     * Implementations of this method must execute as quickly as possible.
+     *
+     * @param mediaPlayer media player to which the event relates
+     * @param frame view of the frame planes
+     * @param sequence sequence number of the frame, increasing monotonically with each frame
+     * @param unchanged <code>true</code> if the frame is unchanged from the previous frame; <code>false</code> if it
+     *                  changed, or duplicate frame detection is disabled
+     */
+    default void display(MediaPlayer mediaPlayer, FrameView frame, long sequence, boolean unchanged) {
+        display(mediaPlayer, frame, sequence);
+    }
+
 }
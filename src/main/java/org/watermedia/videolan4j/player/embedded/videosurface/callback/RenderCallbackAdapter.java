@@ -23,6 +23,8 @@ import org.watermedia.videolan4j.BufferFormat;
 import org.watermedia.videolan4j.player.base.MediaPlayer;
 
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 
 /**
  * A render callback adapter implementation that fills an array of integer data for an entire video frame.
@@ -43,6 +45,16 @@ public abstract class RenderCallbackAdapter implements RenderCallback {
      */
     private int[] buffer;
 
+    /**
+     * Native buffers for which integer views have been created.
+     */
+    private final ByteBuffer[] viewBuffers = new ByteBuffer[8];
+
+    /**
+     * Cached integer views of the native buffers, so a new view need not be created for every frame.
+     */
+    private final IntBuffer[] views = new IntBuffer[8];
+
     /**
      * Create a new render callback.
      * <p>
@@ -79,6 +91,57 @@ public abstract class RenderCallbackAdapter implements RenderCallback {
         this.onDisplay(mediaPlayer, this.buffer);
     }
 
+    @Override
+    public final void display(MediaPlayer mediaPlayer, ByteBuffer[] nativeBuffers, FrameDescriptor descriptor, long sequence) {
+        final IntBuffer view = this.view(nativeBuffers[0]);
+        final int width = descriptor.width();
+        final int height = descriptor.height();
+        final int stride = descriptor.pitch(0) >> 2;
+        view.clear();
+        if (stride == width) {
+            view.get(this.buffer, 0, width * height);
+        } else {
+            // Skip the padding at the end of each row
+            for (int row = 0; row < height; row++) {
+                view.position(row * stride);
+                view.get(this.buffer, row * width, width);
+            }
+        }
+        this.onDisplay(mediaPlayer, this.buffer);
+    }
+
+    /**
+     * Get an integer view of a native buffer, reusing a previously created view if there is one.
+     *
+     * @param nativeBuffer native buffer
+     * @return integer view
+     */
+    private IntBuffer view(ByteBuffer nativeBuffer) {
+        int free = -1;
+        for (int i = 0; i < this.viewBuffers.length; i++) {
+            if (this.viewBuffers[i] == nativeBuffer) {
+                // Pooled buffers may come back with a different limit after a format change
+                if (this.views[i].capacity() == nativeBuffer.limit() >> 2) {
+                    return this.views[i];
+                }
+                free = i;
+                break;
+            }
+            if (free < 0 && this.viewBuffers[i] == null) {
+                free = i;
+            }
+        }
+        // Buffers are re-allocated when the format changes, so when the cache is full simply start again
+        if (free < 0) {
+            Arrays.fill(this.viewBuffers, null);
+            Arrays.fill(this.views, null);
+            free = 0;
+        }
+        this.viewBuffers[free] = nativeBuffer;
+        this.views[free] = nativeBuffer.asIntBuffer();
+        return this.views[free];
+    }
+
     /**
      * Template method invoked when a new frame of video data is ready.
      *
@@ -0,0 +1,167 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface.callback.format;
+
+import org.watermedia.videolan4j.BufferFormat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Format negotiator that picks the output chroma from an ordered list of formats acceptable to the consumer.
+ * <p>
+ * The native library reports the chroma the decoder produces, e.g. "I420" for most H.264 video. Every chroma other
+ * than that one costs the native library a colour conversion of every frame, and a conversion between YUV and RGB
+ * costs far more than just rearranging the planes of the same sub-sampled YUV data. So a consumer able to take, say,
+ * I420 directly as well as RV32 lists both, and receives I420 without any conversion whenever the source is I420 but
+ * RV32 rather than an expensive YUV conversion when the source happens to be RGB.
+ * <p>
+ * The acceptable format with the cheapest conversion from the source chroma is chosen, the order of the list breaks
+ * ties. The chosen chroma, and the source chroma, are reported in the
+ * {@link org.watermedia.videolan4j.player.embedded.videosurface.callback.FrameDescriptor}.
+ */
+public final class ChromaPreference implements FormatNegotiator {
+
+    /**
+     * Conversion cost for the same chroma, no conversion.
+     */
+    private static final int COST_NONE = 0;
+
+    /**
+     * Conversion cost for the same colour model and sub-sampling, only the plane layout differs.
+     */
+    private static final int COST_REPACK = 1;
+
+    /**
+     * Conversion cost for the same colour model but different sub-sampling or depth.
+     */
+    private static final int COST_RESAMPLE = 2;
+
+    /**
+     * Conversion cost for a different colour model.
+     */
+    private static final int COST_CONVERT = 3;
+
+    private static final String RGB = "RGB";
+
+    /**
+     * Family of each known chroma, chromas in the same family differ only in plane layout.
+     */
+    private static final Map<String, String> FAMILIES = new HashMap<String, String>();
+
+    static {
+        family(RGB, "RV32", "RV24", "RV16", "RV15", "RGBA", "BGRA", "ARGB", "RGB8");
+        family("YUV420", "I420", "J420", "YV12", "NV12", "NV21");
+        family("YUV422", "I422", "J422", "YUY2", "UYVY", "YVYU", "NV16");
+        family("YUV444", "I444", "J444", "NV24");
+    }
+
+    private static void family(String family, String... chromas) {
+        for (String chroma : chromas) {
+            FAMILIES.put(chroma, family);
+        }
+    }
+
+    private final BufferFormat[] bufferFormats;
+
+    /**
+     * Create a chroma preference.
+     *
+     * @param bufferFormats acceptable buffer formats, most preferred first
+     */
+    public ChromaPreference(BufferFormat... bufferFormats) {
+        if (bufferFormats == null || bufferFormats.length == 0) {
+            throw new IllegalArgumentException("At least one buffer format is required");
+        }
+        this.bufferFormats = bufferFormats.clone();
+    }
+
+    /**
+     * Create a chroma preference.
+     *
+     * @param bufferFormats acceptable buffer formats, most preferred first
+     */
+    public ChromaPreference(List<BufferFormat> bufferFormats) {
+        this(bufferFormats.toArray(new BufferFormat[0]));
+    }
+
+    @Override
+    public VideoFormat negotiate(VideoFormat proposal) {
+        return proposal.withBufferFormat(this.choose(proposal.sourceChroma()));
+    }
+
+    /**
+     * Choose the buffer format for a source chroma.
+     *
+     * @param sourceChroma chroma produced by the decoder
+     * @return chosen buffer format
+     */
+    public BufferFormat choose(String sourceChroma) {
+        BufferFormat result = this.bufferFormats[0];
+        int resultCost = Integer.MAX_VALUE;
+        for (BufferFormat bufferFormat : this.bufferFormats) {
+            final int cost = cost(sourceChroma, bufferFormat.getChroma());
+            if (cost < resultCost) {
+                result = bufferFormat;
+                resultCost = cost;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the acceptable buffer formats.
+     *
+     * @return copy of the buffer formats, most preferred first
+     */
+    public List<BufferFormat> bufferFormats() {
+        return Arrays.asList(this.bufferFormats.clone());
+    }
+
+    /**
+     * Estimate the relative cost of converting frames from one chroma to another.
+     *
+     * @param source source chroma
+     * @param target target chroma
+     * @return relative cost, zero if no conversion is needed
+     */
+    static int cost(String source, String target) {
+        if (source == null || target == null) {
+            return COST_CONVERT;
+        }
+        source = source.trim();
+        target = target.trim();
+        if (source.equals(target)) {
+            return COST_NONE;
+        }
+        final String sourceFamily = FAMILIES.get(source);
+        final String targetFamily = FAMILIES.get(target);
+        if (sourceFamily != null && sourceFamily.equals(targetFamily)) {
+            return COST_REPACK;
+        }
+        // Anything not known to be RGB is some flavour of YUV
+        final boolean sourceRgb = RGB.equals(sourceFamily);
+        final boolean targetRgb = RGB.equals(targetFamily);
+        return sourceRgb == targetRgb ? COST_RESAMPLE : COST_CONVERT;
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface.callback.format;
+
+/**
+ * Specification for a component that decides the format of the video frames delivered by a
+ * {@link org.watermedia.videolan4j.player.embedded.videosurface.CallbackVideoSurface}.
+ * <p>
+ * The negotiator is invoked on a native thread each time the native video output is (re-)configured, it receives the
+ * format proposed by the native library and returns the format that will actually be used. If the returned size is
+ * different to the source size, the native library scales the video before delivering it.
+ * <p>
+ * Negotiators can be chained with {@link #andThen(FormatNegotiator)}.
+ */
+public interface FormatNegotiator {
+
+    /**
+     * Negotiate the video format.
+     *
+     * @param proposal proposed format
+     * @return format to use, must not be <code>null</code>
+     */
+    VideoFormat negotiate(VideoFormat proposal);
+
+    /**
+     * Create a negotiator that applies this negotiator and then another.
+     *
+     * @param next negotiator to apply next
+     * @return chained negotiator
+     */
+    default FormatNegotiator andThen(FormatNegotiator next) {
+        return proposal -> next.negotiate(negotiate(proposal));
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface.callback.format;
+
+/**
+ * Format negotiator that caps the output resolution, preserving the aspect ratio.
+ * <p>
+ * When the source video is larger than the cap the native library downscales it before it is written to the frame
+ * buffers, so a 4K source shown on a small screen can be delivered at, say, 720p - reducing buffer memory, memory
+ * bandwidth and upload cost accordingly.
+ * <p>
+ * Video that is already within the cap is never upscaled.
+ */
+public final class ResolutionCap implements FormatNegotiator {
+
+    private final int maxWidth;
+
+    private final int maxHeight;
+
+    private final long maxPixels;
+
+    /**
+     * Create a resolution cap.
+     *
+     * @param maxWidth maximum width, in pixels, or zero for no limit
+     * @param maxHeight maximum height, in pixels, or zero for no limit
+     * @param maxPixels maximum number of pixels (width multiplied by height), or zero for no limit
+     */
+    public ResolutionCap(int maxWidth, int maxHeight, long maxPixels) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Create a resolution cap.
+     *
+     * @param maxWidth maximum width, in pixels, or zero for no limit
+     * @param maxHeight maximum height, in pixels, or zero for no limit
+     */
+    public ResolutionCap(int maxWidth, int maxHeight) {
+        this(maxWidth, maxHeight, 0);
+    }
+
+    /**
+     * Create a resolution cap limiting only the number of pixels.
+     *
+     * @param maxPixels maximum number of pixels (width multiplied by height)
+     * @return resolution cap
+     */
+    public static ResolutionCap pixels(long maxPixels) {
+        return new ResolutionCap(0, 0, maxPixels);
+    }
+
+    @Override
+    public VideoFormat negotiate(VideoFormat proposal) {
+        final int width = proposal.width();
+        final int height = proposal.height();
+        if (width <= 0 || height <= 0) {
+            return proposal;
+        }
+        double scale = 1.0;
+        if (this.maxWidth > 0) {
+            scale = Math.min(scale, (double) this.maxWidth / width);
+        }
+        if (this.maxHeight > 0) {
+            scale = Math.min(scale, (double) this.maxHeight / height);
+        }
+        if (this.maxPixels > 0) {
+            scale = Math.min(scale, Math.sqrt((double) this.maxPixels / ((long) width * height)));
+        }
+        if (scale >= 1.0) {
+            return proposal;
+        }
+        // Keep the dimensions even, sub-sampled chromas require it
+        final int scaledWidth = Math.max(2, (int) (width * scale) & ~1);
+        final int scaledHeight = Math.max(2, (int) (height * scale) & ~1);
+        return proposal.withSize(scaledWidth, scaledHeight);
+    }
+
+    /**
+     * Get the maximum width.
+     *
+     * @return maximum width, in pixels, or zero for no limit
+     */
+    public int maxWidth() {
+        return this.maxWidth;
+    }
+
+    /**
+     * Get the maximum height.
+     *
+     * @return maximum height, in pixels, or zero for no limit
+     */
+    public int maxHeight() {
+        return this.maxHeight;
+    }
+
+    /**
+     * Get the maximum number of pixels.
+     *
+     * @return maximum number of pixels, or zero for no limit
+     */
+    public long maxPixels() {
+        return this.maxPixels;
+    }
+
+}
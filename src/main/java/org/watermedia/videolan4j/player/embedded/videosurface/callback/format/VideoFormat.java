@@ -0,0 +1,123 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package org.watermedia.videolan4j.player.embedded.videosurface.callback.format;
+
+import org.watermedia.videolan4j.BufferFormat;
+
+/**
+ * Immutable video format used during format negotiation.
+ * <p>
+ * The native library proposes the source chroma and picture size, the video surface supplies the buffer format it was
+ * configured with, and a {@link FormatNegotiator} may then change the output size and buffer format.
+ */
+public final class VideoFormat {
+
+    private final String sourceChroma;
+
+    private final BufferFormat bufferFormat;
+
+    private final int width;
+
+    private final int height;
+
+    /**
+     * Create a video format.
+     *
+     * @param sourceChroma chroma of the decoded source video, as proposed by the native library
+     * @param bufferFormat buffer format used for the output frames
+     * @param width output width, in pixels
+     * @param height output height, in pixels
+     */
+    public VideoFormat(String sourceChroma, BufferFormat bufferFormat, int width, int height) {
+        this.sourceChroma = sourceChroma;
+        this.bufferFormat = bufferFormat;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Get the chroma of the decoded source video.
+     *
+     * @return source chroma, e.g. "I420"
+     */
+    public String sourceChroma() {
+        return this.sourceChroma;
+    }
+
+    /**
+     * Get the buffer format used for the output frames.
+     *
+     * @return buffer format
+     */
+    public BufferFormat bufferFormat() {
+        return this.bufferFormat;
+    }
+
+    /**
+     * Get the output width.
+     *
+     * @return width, in pixels
+     */
+    public int width() {
+        return this.width;
+    }
+
+    /**
+     * Get the output height.
+     *
+     * @return height, in pixels
+     */
+    public int height() {
+        return this.height;
+    }
+
+    /**
+     * Create a copy of this format with a different output size.
+     *
+     * @param width output width, in pixels
+     * @param height output height, in pixels
+     * @return new video format
+     */
+    public VideoFormat withSize(int width, int height) {
+        return new VideoFormat(this.sourceChroma, this.bufferFormat, width, height);
+    }
+
+    /**
+     * Create a copy of this format with a different buffer format.
+     *
+     * @param bufferFormat buffer format
+     * @return new video format
+     */
+    public VideoFormat withBufferFormat(BufferFormat bufferFormat) {
+        return new VideoFormat(this.sourceChroma, bufferFormat, this.width, this.height);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(80)
+            .append(getClass().getSimpleName()).append('[')
+            .append("sourceChroma=").append(this.sourceChroma).append(',')
+            .append("chroma=").append(this.bufferFormat != null ? this.bufferFormat.getChroma() : null).append(',')
+            .append("width=").append(this.width).append(',')
+            .append("height=").append(this.height).append(']')
+            .toString();
+    }
+
+}
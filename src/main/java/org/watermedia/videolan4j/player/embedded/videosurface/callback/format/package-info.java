@@ -1,4 +1,5 @@
 /**
- * Provides default buffer format implementations.
+ * Provides video format negotiation, e.g. capping the resolution of the frames delivered by the callback video surface
+ * or choosing their chroma from the formats acceptable to the consumer.
  */
 package org.watermedia.videolan4j.player.embedded.videosurface.callback.format;